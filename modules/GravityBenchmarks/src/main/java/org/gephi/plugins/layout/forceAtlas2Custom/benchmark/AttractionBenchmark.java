@@ -0,0 +1,110 @@
+/*
+Copyright 2008-2011 Gephi
+Authors : Mathieu Jacomy <mathieu.jacomy@gmail.com>
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+ */
+package org.gephi.plugins.layout.forceAtlas2Custom.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import org.gephi.plugins.layout.forceAtlas2Custom.ForceAtlas2Edges;
+import org.gephi.plugins.layout.forceAtlas2Custom.ForceFactory;
+import org.gephi.plugins.layout.forceAtlas2Custom.ForceFactory.AttractionForce;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Each model of the attraction forces, along all the edges of the graph as the
+ * layout does in one iteration.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class AttractionBenchmark extends GraphState {
+
+    @Param({"false", "true"})
+    public boolean logAttraction;
+
+    @Param({"false", "true"})
+    public boolean distributedAttraction;
+
+    @Param({"false", "true"})
+    public boolean adjustSizes;
+
+    private ForceAtlas2Edges edges;
+    private AttractionForce Attraction;
+
+    @Setup(Level.Trial)
+    public void buildForce() {
+        edges = graph.toEdges(data);
+        double outboundAttCompensation = 1;
+        if (distributedAttraction) {
+            double massSum = 0;
+            for (int n = 0; n < data.count; n++) {
+                massSum += data.mass[n];
+            }
+            outboundAttCompensation = massSum / data.count;
+        }
+        Attraction = ForceFactory.builder.buildAttraction(data, logAttraction, distributedAttraction, adjustSizes, 1 * ((distributedAttraction) ? (outboundAttCompensation) : (1)));
+    }
+
+    @Benchmark
+    public void edges() {
+        Attraction.apply(edges.source, edges.target, edges.weight, 0, edges.count, data.dx, data.dy);
+    }
+
+    @Benchmark
+    public void edgeByEdge() {
+        int[] source = edges.source;
+        int[] target = edges.target;
+        double[] weight = edges.weight;
+        for (int e = 0; e < edges.count; e++) {
+            Attraction.apply(source[e], target[e], weight[e], data.dx, data.dy);
+        }
+    }
+}
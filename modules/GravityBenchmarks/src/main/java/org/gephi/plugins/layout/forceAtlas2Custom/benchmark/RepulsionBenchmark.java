@@ -0,0 +1,187 @@
+/*
+Copyright 2008-2011 Gephi
+Authors : Mathieu Jacomy <mathieu.jacomy@gmail.com>
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+ */
+package org.gephi.plugins.layout.forceAtlas2Custom.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.gephi.plugins.layout.forceAtlas2Custom.ForceFactory;
+import org.gephi.plugins.layout.forceAtlas2Custom.ForceFactory.RepulsionForce;
+import org.gephi.plugins.layout.forceAtlas2Custom.TilesThread;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Each model of the repulsion forces, and the strong gravity. Times are per
+ * pair, except for the gravities which are per pass over all the nodes. The
+ * pairs are sampled at random, as the exact repulsion of 1M nodes does not fit
+ * in a benchmark.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RepulsionBenchmark extends GraphState {
+
+    public static final int PAIRS = 1 << 20;
+    // Nodes of the pair matrix block of the tile benchmark, at most the
+    // smallest graph
+    public static final int BLOCK = 1000;
+
+    @Param({"false", "true"})
+    public boolean adjustSizes;
+
+    private RepulsionForce Repulsion;
+    private RepulsionForce OwnerRepulsion;
+    private RepulsionForce StrongGravity;
+    private int[] pairs;
+    private int[] bucket;
+
+    @Setup(Level.Trial)
+    public void buildForces() {
+        Repulsion = ForceFactory.builder.buildRepulsion(data, adjustSizes, 2.0);
+        OwnerRepulsion = ForceFactory.builder.buildOwnerRepulsion(Repulsion, 2.0);
+        StrongGravity = ForceFactory.builder.getStrongGravity(data, 2.0, 1.0, 1.0);
+        Random random = new Random(SEED);
+        pairs = new int[2 * PAIRS];
+        for (int i = 0; i < pairs.length; i++) {
+            pairs[i] = random.nextInt(data.count);
+        }
+        bucket = new int[64];
+        for (int i = 0; i < bucket.length; i++) {
+            bucket[i] = random.nextInt(data.count);
+        }
+        if (data.count < BLOCK) {
+            throw new IllegalArgumentException("At least " + BLOCK + " nodes are needed");
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAIRS)
+    public void nodeNode() {
+        for (int i = 0; i < PAIRS; i++) {
+            Repulsion.apply(pairs[2 * i], pairs[2 * i + 1], data.dx, data.dy);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAIRS)
+    public void nodeNodeOwner() {
+        for (int i = 0; i < PAIRS; i++) {
+            OwnerRepulsion.apply(pairs[2 * i], pairs[2 * i + 1], data.dx, data.dy);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAIRS)
+    public void massCenter() {
+        for (int i = 0; i < PAIRS; i++) {
+            int m = pairs[2 * i + 1];
+            Repulsion.apply(pairs[2 * i], data.x[m], data.y[m], data.mass[m], data.dx, data.dy);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAIRS)
+    public void field() {
+        for (int i = 0; i < PAIRS; i++) {
+            int m = pairs[2 * i + 1];
+            Repulsion.applyField(pairs[2 * i], data.x[m], data.y[m], data.dx, data.dy);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAIRS)
+    public void bucket() {
+        int size = bucket.length;
+        for (int i = 0; i < PAIRS / size; i++) {
+            Repulsion.apply(pairs[i], bucket, 0, size, data.dx, data.dy);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAIRS)
+    public void bucketOneSided() {
+        int size = bucket.length;
+        for (int i = 0; i < PAIRS / size; i++) {
+            Repulsion.apply(pairs[i], bucket, 0, size, 1.0, data.dx, data.dy);
+        }
+    }
+
+    /**
+     * Exact repulsion of the first BLOCK nodes, by tiles as in TilesThread.
+     * Time is per pair.
+     */
+    @Benchmark
+    @OperationsPerInvocation(BLOCK * (BLOCK - 1) / 2)
+    public void tiles() {
+        for (int from1 = 0; from1 < BLOCK; from1 += TilesThread.TILE_SIZE) {
+            int to1 = Math.min(BLOCK, from1 + TilesThread.TILE_SIZE);
+            for (int from2 = 0; from2 <= from1; from2 += TilesThread.TILE_SIZE) {
+                Repulsion.applyTile(from1, to1, from2, Math.min(BLOCK, from2 + TilesThread.TILE_SIZE), data.dx, data.dy);
+            }
+        }
+    }
+
+    @Benchmark
+    public void gravity() {
+        for (int n = 0; n < data.count; n++) {
+            Repulsion.apply(n, 1.0, data.dx, data.dy);
+        }
+    }
+
+    @Benchmark
+    public void strongGravity() {
+        for (int n = 0; n < data.count; n++) {
+            StrongGravity.apply(n, 1.0, data.dx, data.dy);
+        }
+    }
+}
@@ -0,0 +1,374 @@
+/*
+Copyright 2008-2011 Gephi
+Authors : Mathieu Jacomy <mathieu.jacomy@gmail.com>
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+ */
+package org.gephi.plugins.layout.forceAtlas2Custom.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import org.gephi.graph.api.GraphModel;
+import org.gephi.plugins.layout.forceAtlas2Custom.ApproximateRepulsion;
+import org.gephi.plugins.layout.forceAtlas2Custom.ForceAtlas2;
+import org.gephi.plugins.layout.forceAtlas2Custom.ForceAtlas2Builder;
+
+/**
+ * Headless runs of the whole layout on synthetic graphs, for scaling curves:
+ * iteration time against node count, edge count and thread count, with the
+ * heap per node, the GC time and the allocation rate of each run.
+ * <p>
+ * Strong scaling runs each graph size on each thread count. Weak scaling
+ * grows the graph with the thread count, weakNodes nodes per thread. Options
+ * are given as name=value, lists separated by commas:
+ * <pre>
+ * java -cp benchmarks.jar org.gephi.plugins.layout.forceAtlas2Custom.benchmark.ScalingHarness
+ *     nodes=1000,10000,100000 threads=1,2,4,8 models=UNIFORM,POWER_LAW out=scaling
+ * </pre>
+ * writes scaling.csv and scaling.json. Runs are best done with a fixed heap
+ * (-Xms equal to -Xmx), so that heap resizing does not show in the times.
+ */
+public class ScalingHarness {
+
+    private static final Map<String, String> DEFAULTS = new LinkedHashMap<String, String>();
+
+    static {
+        DEFAULTS.put("nodes", "1000,10000,100000");
+        DEFAULTS.put("degrees", "8");
+        DEFAULTS.put("models", "UNIFORM,POWER_LAW,PLANTED_PARTITION");
+        DEFAULTS.put("threads", "1,2,4");
+        DEFAULTS.put("weakNodes", "10000");
+        DEFAULTS.put("iterations", "50");
+        DEFAULTS.put("warmup", "5");
+        DEFAULTS.put("gravity", "true");
+        DEFAULTS.put("barnesHut", "true");
+        DEFAULTS.put("backend", "REGION");
+        DEFAULTS.put("out", "scaling");
+    }
+
+    /**
+     * Measures of one run.
+     */
+    public static class Result {
+
+        public String scaling;
+        public SyntheticGraph.Degrees model;
+        public double averageDegree;
+        public int nodes;
+        public int edges;
+        public int threads;
+        public int iterations;
+        public double initMs;
+        public double meanMs;
+        public double minMs;
+        public double medianMs;
+        public double maxMs;
+        public double heapBytesPerNode;
+        public long gcCount;
+        public double gcMs;
+        public long allocatedBytes;
+        // Relative to the run on the fewest threads of the same series
+        public double speedup;
+        public double efficiency;
+
+        // Bytes per second while iterating, -1 if not measured
+        public double getAllocationRate() {
+            if (allocatedBytes < 0 || iterations == 0) {
+                return -1;
+            }
+            return allocatedBytes / (iterations * meanMs / 1000);
+        }
+    }
+
+    private final Map<String, String> options;
+    private final List<Result> results = new ArrayList<Result>();
+
+    public ScalingHarness(Map<String, String> options) {
+        this.options = new LinkedHashMap<String, String>(DEFAULTS);
+        this.options.putAll(options);
+    }
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = new LinkedHashMap<String, String>();
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (equals < 0 || !DEFAULTS.containsKey(arg.substring(0, equals))) {
+                System.err.println("Unknown option " + arg + ", options and defaults are " + DEFAULTS);
+                System.exit(1);
+            }
+            options.put(arg.substring(0, equals), arg.substring(equals + 1));
+        }
+        ScalingHarness harness = new ScalingHarness(options);
+        harness.run();
+        String out = harness.options.get("out");
+        harness.writeCsv(new File(out + ".csv"));
+        harness.writeJson(new File(out + ".json"));
+    }
+
+    public List<Result> getResults() {
+        return results;
+    }
+
+    public void run() {
+        int[] threads = intList("threads");
+        int weakNodes = Integer.parseInt(options.get("weakNodes"));
+        for (String model : options.get("models").split(",")) {
+            SyntheticGraph.Degrees degrees = SyntheticGraph.Degrees.valueOf(model.trim());
+            for (String degree : options.get("degrees").split(",")) {
+                double averageDegree = Double.parseDouble(degree.trim());
+                for (int nodes : intList("nodes")) {
+                    List<Result> series = new ArrayList<Result>();
+                    for (int threadCount : threads) {
+                        series.add(run("strong", degrees, averageDegree, nodes, threadCount));
+                    }
+                    compare(series, true);
+                }
+                if (weakNodes > 0) {
+                    List<Result> series = new ArrayList<Result>();
+                    for (int threadCount : threads) {
+                        series.add(run("weak", degrees, averageDegree, weakNodes * threadCount, threadCount));
+                    }
+                    compare(series, false);
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs the layout on a new graph, from initAlgo to endAlgo.
+     */
+    public Result run(String scaling, SyntheticGraph.Degrees degrees, double averageDegree, int nodes, int threadCount) {
+        int iterations = Integer.parseInt(options.get("iterations"));
+        int warmup = Integer.parseInt(options.get("warmup"));
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+        long heapBefore = usedHeap(memory);
+        SyntheticGraph graph = SyntheticGraph.generate(nodes, averageDegree, degrees, GraphState.SEED);
+        GraphModel graphModel = graph.toGraphModel(Boolean.parseBoolean(options.get("gravity")));
+
+        ForceAtlas2 layout = new ForceAtlas2Builder().buildLayout();
+        layout.setGraphModel(graphModel);
+        layout.resetPropertiesValues();
+        layout.setThreadsCount(threadCount);
+        layout.setBarnesHutOptimize(Boolean.parseBoolean(options.get("barnesHut")));
+        layout.setApproximationBackend(ApproximateRepulsion.Backend.valueOf(options.get("backend")));
+
+        Result result = new Result();
+        result.scaling = scaling;
+        result.model = degrees;
+        result.averageDegree = averageDegree;
+        result.nodes = nodes;
+        result.edges = graph.edgeCount;
+        result.threads = threadCount;
+        result.iterations = iterations;
+        try {
+            long start = System.nanoTime();
+            layout.initAlgo();
+            result.initMs = (System.nanoTime() - start) / 1e6;
+            result.heapBytesPerNode = (double) (usedHeap(memory) - heapBefore) / nodes;
+
+            for (int i = 0; i < warmup && layout.canAlgo(); i++) {
+                layout.goAlgo();
+            }
+
+            long gcCount = gcCount();
+            long gcTime = gcTime();
+            long allocated = allocatedBytes();
+            double[] times = new double[iterations];
+            int done = 0;
+            while (done < iterations && layout.canAlgo()) {
+                start = System.nanoTime();
+                layout.goAlgo();
+                times[done++] = (System.nanoTime() - start) / 1e6;
+            }
+            result.allocatedBytes = (allocated < 0) ? (-1) : (allocatedBytes() - allocated);
+            result.gcCount = gcCount() - gcCount;
+            result.gcMs = gcTime() - gcTime;
+
+            result.iterations = done;
+            times = Arrays.copyOf(times, done);
+            Arrays.sort(times);
+            double sum = 0;
+            for (double t : times) {
+                sum += t;
+            }
+            if (done > 0) {
+                result.meanMs = sum / done;
+                result.minMs = times[0];
+                result.medianMs = times[done / 2];
+                result.maxMs = times[done - 1];
+            }
+        } finally {
+            layout.endAlgo();
+        }
+        results.add(result);
+        System.out.println(String.format(Locale.ROOT, "%s %s degree %.1f: %d nodes, %d edges, %d threads: %.2f ms per iteration",
+                scaling, degrees, averageDegree, nodes, result.edges, threadCount, result.meanMs));
+        return result;
+    }
+
+    /*
+     * Strong scaling: speedup is the time on the fewest threads over the time,
+     * efficiency the speedup per thread added. Weak scaling: the work grows
+     * with the threads, so efficiency is the ratio of the times.
+     */
+    private void compare(List<Result> series, boolean strong) {
+        Result base = null;
+        for (Result r : series) {
+            if (base == null || r.threads < base.threads) {
+                base = r;
+            }
+        }
+        for (Result r : series) {
+            r.speedup = base.meanMs / r.meanMs;
+            r.efficiency = (strong) ? (r.speedup * base.threads / r.threads) : (r.speedup);
+        }
+    }
+
+    private int[] intList(String option) {
+        String[] values = options.get(option).split(",");
+        int[] list = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+            list[i] = Integer.parseInt(values[i].trim());
+        }
+        return list;
+    }
+
+    private static long usedHeap(MemoryMXBean memory) {
+        System.gc();
+        System.gc();
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static long gcTime() {
+        long time = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            time += Math.max(0, gc.getCollectionTime());
+        }
+        return time;
+    }
+
+    /*
+     * Bytes allocated by the live threads, where the JVM counts them. The
+     * pool threads of the layout live from initAlgo to endAlgo, so they are
+     * all counted between two iterations. -1 if not supported.
+     */
+    private static long allocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+            return -1;
+        }
+        com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean) threads;
+        if (!hotspot.isThreadAllocatedMemorySupported() || !hotspot.isThreadAllocatedMemoryEnabled()) {
+            return -1;
+        }
+        long total = 0;
+        for (long bytes : hotspot.getThreadAllocatedBytes(hotspot.getAllThreadIds())) {
+            total += Math.max(0, bytes);
+        }
+        return total;
+    }
+
+    public void writeCsv(File file) throws IOException {
+        PrintWriter out = new PrintWriter(file, "UTF-8");
+        try {
+            out.println("scaling,model,averageDegree,nodes,edges,threads,iterations,initMs,meanMs,minMs,medianMs,maxMs,speedup,efficiency,heapBytesPerNode,gcCount,gcMs,allocatedBytes,allocationBytesPerSecond");
+            for (Result r : results) {
+                out.println(String.format(Locale.ROOT, "%s,%s,%.2f,%d,%d,%d,%d,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f,%.1f,%d,%.1f,%d,%.0f",
+                        r.scaling, r.model, r.averageDegree, r.nodes, r.edges, r.threads, r.iterations,
+                        r.initMs, r.meanMs, r.minMs, r.medianMs, r.maxMs, r.speedup, r.efficiency,
+                        r.heapBytesPerNode, r.gcCount, r.gcMs, r.allocatedBytes, r.getAllocationRate()));
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    public void writeJson(File file) throws IOException {
+        PrintWriter out = new PrintWriter(file, "UTF-8");
+        try {
+            out.println("{");
+            out.println("  \"options\": {");
+            int i = 0;
+            for (Map.Entry<String, String> option : options.entrySet()) {
+                out.print("    \"" + option.getKey() + "\": \"" + option.getValue() + "\"");
+                out.println((++i < options.size()) ? (",") : (""));
+            }
+            out.println("  },");
+            out.println("  \"jvm\": {");
+            out.println("    \"version\": \"" + System.getProperty("java.version") + "\",");
+            out.println("    \"processors\": " + Runtime.getRuntime().availableProcessors() + ",");
+            out.println("    \"maxHeap\": " + Runtime.getRuntime().maxMemory());
+            out.println("  },");
+            out.println("  \"results\": [");
+            for (i = 0; i < results.size(); i++) {
+                Result r = results.get(i);
+                out.print(String.format(Locale.ROOT, "    {\"scaling\": \"%s\", \"model\": \"%s\", \"averageDegree\": %.2f, \"nodes\": %d, \"edges\": %d, \"threads\": %d, \"iterations\": %d, "
+                        + "\"initMs\": %.3f, \"meanMs\": %.3f, \"minMs\": %.3f, \"medianMs\": %.3f, \"maxMs\": %.3f, \"speedup\": %.3f, \"efficiency\": %.3f, "
+                        + "\"heapBytesPerNode\": %.1f, \"gcCount\": %d, \"gcMs\": %.1f, \"allocatedBytes\": %d, \"allocationBytesPerSecond\": %.0f}",
+                        r.scaling, r.model, r.averageDegree, r.nodes, r.edges, r.threads, r.iterations,
+                        r.initMs, r.meanMs, r.minMs, r.medianMs, r.maxMs, r.speedup, r.efficiency,
+                        r.heapBytesPerNode, r.gcCount, r.gcMs, r.allocatedBytes, r.getAllocationRate()));
+                out.println((i + 1 < results.size()) ? (",") : (""));
+            }
+            out.println("  ]");
+            out.println("}");
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+Copyright 2008-2011 Gephi
+Authors : Mathieu Jacomy <mathieu.jacomy@gmail.com>
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+ */
+package org.gephi.plugins.layout.forceAtlas2Custom.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import org.gephi.graph.api.GraphModel;
+import org.gephi.plugins.layout.forceAtlas2Custom.ApproximateRepulsion;
+import org.gephi.plugins.layout.forceAtlas2Custom.ForceAtlas2;
+import org.gephi.plugins.layout.forceAtlas2Custom.ForceAtlas2Builder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * One iteration of the whole layout, on a graph model. The layout keeps
+ * running from iteration to iteration, so the measure covers the first
+ * iterations after the start, where nodes move the most.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StepBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int nodes;
+
+    @Param({"UNIFORM", "POWER_LAW"})
+    public SyntheticGraph.Degrees degrees;
+
+    @Param({"8"})
+    public double averageDegree;
+
+    @Param({"true"})
+    public boolean barnesHutOptimize;
+
+    @Param({"REGION"})
+    public ApproximateRepulsion.Backend approximationBackend;
+
+    // 0 for the default thread count
+    @Param({"0"})
+    public int threads;
+
+    private ForceAtlas2 layout;
+
+    @Setup(Level.Trial)
+    public void start() {
+        GraphModel graphModel = SyntheticGraph.generate(nodes, averageDegree, degrees, GraphState.SEED).toGraphModel();
+        layout = new ForceAtlas2Builder().buildLayout();
+        layout.setGraphModel(graphModel);
+        layout.resetPropertiesValues();
+        layout.setBarnesHutOptimize(barnesHutOptimize);
+        layout.setApproximationBackend(approximationBackend);
+        if (threads > 0) {
+            layout.setThreadsCount(threads);
+        }
+        layout.initAlgo();
+    }
+
+    @Benchmark
+    public void goAlgo() {
+        layout.goAlgo();
+    }
+
+    @TearDown(Level.Trial)
+    public void end() {
+        layout.endAlgo();
+    }
+}
@@ -0,0 +1,269 @@
+/*
+Copyright 2008-2011 Gephi
+Authors : Mathieu Jacomy <mathieu.jacomy@gmail.com>
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+ */
+package org.gephi.plugins.layout.forceAtlas2Custom.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.gephi.graph.api.Edge;
+import org.gephi.graph.api.Graph;
+import org.gephi.graph.api.GraphFactory;
+import org.gephi.graph.api.GraphModel;
+import org.gephi.graph.api.Node;
+import org.gephi.graph.api.Table;
+import org.gephi.plugins.layout.forceAtlas2Custom.ForceAtlas2Data;
+import org.gephi.plugins.layout.forceAtlas2Custom.ForceAtlas2Edges;
+
+/**
+ * Random undirected graph with positions and gravity sources, generated from
+ * a seed so that every run of a benchmark lays out the same graph. Self loops
+ * and parallel edges are dropped, so the average degree is slightly lower than
+ * asked for on dense graphs.
+ */
+public class SyntheticGraph {
+
+    public enum Degrees {
+        // Edge ends picked uniformly: Poisson degrees, as in G(n, m)
+        UNIFORM,
+        // Edge ends picked with weight i^(-1 / (exponent - 1)): power law
+        // degrees of the given exponent, as in the Chung-Lu model
+        POWER_LAW,
+        // Poisson degrees, with most edges inside communities of about
+        // COMMUNITY_SIZE nodes, as in the planted partition model
+        PLANTED_PARTITION
+    }
+
+    public static final double POWER_LAW_EXPONENT = 2.5;
+    public static final int COMMUNITY_SIZE = 100;
+    // Share of the edges of the planted partition that stay in a community
+    public static final double COMMUNITY_EDGES = 0.9;
+
+    public final int nodeCount;
+    public final int edgeCount;
+    public final float[] x;
+    public final float[] y;
+    public final int[] source;
+    public final int[] target;
+    public final double[] gravityX;
+    public final double[] gravityY;
+    public final int[] degree;
+
+    private SyntheticGraph(int nodeCount, int edgeCount, float[] x, float[] y, int[] source, int[] target, double[] gravityX, double[] gravityY) {
+        this.nodeCount = nodeCount;
+        this.edgeCount = edgeCount;
+        this.x = x;
+        this.y = y;
+        this.source = source;
+        this.target = target;
+        this.gravityX = gravityX;
+        this.gravityY = gravityY;
+        this.degree = new int[nodeCount];
+        for (int i = 0; i < edgeCount; i++) {
+            degree[source[i]]++;
+            degree[target[i]]++;
+        }
+    }
+
+    /**
+     * Generates nodeCount nodes in a disc whose area grows with the node
+     * count, like a layout started from random positions, and about
+     * nodeCount * averageDegree / 2 edges.
+     */
+    public static SyntheticGraph generate(int nodeCount, double averageDegree, Degrees degrees, long seed) {
+        Random random = new Random(seed);
+        float[] x = new float[nodeCount];
+        float[] y = new float[nodeCount];
+        double[] gravityX = new double[nodeCount];
+        double[] gravityY = new double[nodeCount];
+        double radius = 10 * Math.sqrt(nodeCount);
+        for (int i = 0; i < nodeCount; i++) {
+            double r = radius * Math.sqrt(random.nextDouble());
+            double a = 2 * Math.PI * random.nextDouble();
+            x[i] = (float) (r * Math.cos(a));
+            y[i] = (float) (r * Math.sin(a));
+            gravityX[i] = random.nextDouble();
+            gravityY[i] = random.nextDouble();
+        }
+
+        double[] cumulative = null;
+        if (degrees == Degrees.POWER_LAW) {
+            cumulative = new double[nodeCount];
+            double total = 0;
+            for (int i = 0; i < nodeCount; i++) {
+                total += Math.pow(i + 1, -1 / (POWER_LAW_EXPONENT - 1));
+                cumulative[i] = total;
+            }
+        }
+
+        // Edges as sorted keys (smaller end in the high bits), so that
+        // duplicates are adjacent
+        int requested = (int) Math.min(Integer.MAX_VALUE - 8, Math.round(nodeCount * averageDegree / 2));
+        long[] keys = new long[requested];
+        int keyCount = 0;
+        if (nodeCount > 1) {
+            for (int i = 0; i < requested; i++) {
+                int a = pick(random, nodeCount, cumulative);
+                int b;
+                if (degrees == Degrees.PLANTED_PARTITION && random.nextDouble() < COMMUNITY_EDGES) {
+                    // Communities are consecutive ranges of nodes
+                    int from = a - a % COMMUNITY_SIZE;
+                    b = from + random.nextInt(Math.min(COMMUNITY_SIZE, nodeCount - from));
+                } else {
+                    b = pick(random, nodeCount, cumulative);
+                }
+                if (a != b) {
+                    keys[keyCount++] = ((long) Math.min(a, b) << 32) | Math.max(a, b);
+                }
+            }
+        }
+        Arrays.sort(keys, 0, keyCount);
+        int edgeCount = 0;
+        for (int i = 0; i < keyCount; i++) {
+            if (i == 0 || keys[i] != keys[i - 1]) {
+                keys[edgeCount++] = keys[i];
+            }
+        }
+
+        // Shuffled, so that edges are not sorted by source as read from a graph
+        for (int i = edgeCount - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            long key = keys[i];
+            keys[i] = keys[j];
+            keys[j] = key;
+        }
+        int[] source = new int[edgeCount];
+        int[] target = new int[edgeCount];
+        for (int i = 0; i < edgeCount; i++) {
+            source[i] = (int) (keys[i] >>> 32);
+            target[i] = (int) keys[i];
+        }
+        return new SyntheticGraph(nodeCount, edgeCount, x, y, source, target, gravityX, gravityY);
+    }
+
+    private static int pick(Random random, int nodeCount, double[] cumulative) {
+        if (cumulative == null) {
+            return random.nextInt(nodeCount);
+        }
+        double r = random.nextDouble() * cumulative[nodeCount - 1];
+        int i = Arrays.binarySearch(cumulative, r);
+        return Math.min(nodeCount - 1, (i >= 0) ? (i) : (-i - 1));
+    }
+
+    /**
+     * Layout data of the graph, with masses and gravity sources set as
+     * ForceAtlas2 would from the graph and its attributes.
+     */
+    public ForceAtlas2Data toData() {
+        ForceAtlas2Data data = new ForceAtlas2Data();
+        data.allocate(nodeCount);
+        System.arraycopy(x, 0, data.x, 0, nodeCount);
+        System.arraycopy(y, 0, data.y, 0, nodeCount);
+        Arrays.fill(data.size, 10f);
+        for (int i = 0; i < nodeCount; i++) {
+            data.mass[i] = 1 + degree[i];
+            data.gravity_x[i] = gravityX[i] - 0.5;
+            data.gravity_y[i] = gravityY[i] - 0.5;
+            data.gravity_x_strength[i] = 1.0;
+            data.gravity_y_strength[i] = 1.0;
+        }
+        return data;
+    }
+
+    /**
+     * Edges of the graph for the given layout data, all of weight 1.
+     */
+    public ForceAtlas2Edges toEdges(ForceAtlas2Data data) {
+        double[] weight = new double[edgeCount];
+        Arrays.fill(weight, 1.0);
+        ForceAtlas2Edges edges = new ForceAtlas2Edges();
+        edges.load(data, source, target, weight, edgeCount, 1.0);
+        return edges;
+    }
+
+    /**
+     * Graph model holding the graph, with the gravity attributes read by
+     * ForceAtlas2, to run the whole layout on.
+     */
+    public GraphModel toGraphModel() {
+        return toGraphModel(true);
+    }
+
+    /**
+     * Graph model holding the graph, with or without the gravity attributes.
+     * Without them, ForceAtlas2 pulls all the nodes toward the origin.
+     */
+    public GraphModel toGraphModel(boolean gravityAttributes) {
+        GraphModel graphModel = GraphModel.Factory.newInstance();
+        if (gravityAttributes) {
+            Table nodeTable = graphModel.getNodeTable();
+            nodeTable.addColumn("gravity_x", Double.class);
+            nodeTable.addColumn("gravity_y", Double.class);
+            nodeTable.addColumn("gravity_x_strength", Double.class);
+            nodeTable.addColumn("gravity_y_strength", Double.class);
+        }
+
+        GraphFactory factory = graphModel.factory();
+        Node[] nodes = new Node[nodeCount];
+        for (int i = 0; i < nodeCount; i++) {
+            Node node = factory.newNode(String.valueOf(i));
+            node.setX(x[i]);
+            node.setY(y[i]);
+            node.setSize(10f);
+            if (gravityAttributes) {
+                node.setAttribute("gravity_x", gravityX[i]);
+                node.setAttribute("gravity_y", gravityY[i]);
+                node.setAttribute("gravity_x_strength", 1.0);
+                node.setAttribute("gravity_y_strength", 1.0);
+            }
+            nodes[i] = node;
+        }
+        List<Edge> edges = new ArrayList<Edge>(edgeCount);
+        for (int i = 0; i < edgeCount; i++) {
+            edges.add(factory.newEdge(nodes[source[i]], nodes[target[i]], 0, 1.0, false));
+        }
+        Graph graph = graphModel.getUndirectedGraph();
+        graph.addAllNodes(Arrays.asList(nodes));
+        graph.addAllEdges(edges);
+        return graphModel;
+    }
+}
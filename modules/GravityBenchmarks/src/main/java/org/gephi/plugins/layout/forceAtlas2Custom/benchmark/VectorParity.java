@@ -0,0 +1,198 @@
+/*
+Copyright 2008-2011 Gephi
+Authors : Mathieu Jacomy <mathieu.jacomy@gmail.com>
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+ */
+package org.gephi.plugins.layout.forceAtlas2Custom.benchmark;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+import org.gephi.plugins.layout.forceAtlas2Custom.ForceAtlas2Data;
+import org.gephi.plugins.layout.forceAtlas2Custom.ForceAtlas2Edges;
+import org.gephi.plugins.layout.forceAtlas2Custom.ForceFactory;
+import org.gephi.plugins.layout.forceAtlas2Custom.ForceFactory.AttractionForce;
+import org.gephi.plugins.layout.forceAtlas2Custom.ForceFactory.RepulsionForce;
+import org.gephi.plugins.layout.forceAtlas2Custom.VectorKernels;
+
+/**
+ * Checks the vectorized kernels against the scalar forces: exact tiles on and
+ * off the diagonal, buckets on both nodes and on one node, and logarithmic
+ * attraction. The scalar side goes through the node-node models, which never
+ * use the kernels. Ranges have odd lengths and offsets so that the tails and
+ * the gather and scatter of the kernels are all exercised. The kernels only
+ * sum in another order, so each force must match within TOLERANCE of the
+ * largest force of the case.
+ * <pre>
+ * java --add-modules jdk.incubator.vector -cp benchmarks.jar org.gephi.plugins.layout.forceAtlas2Custom.benchmark.VectorParity [nodes] [seed]
+ * </pre>
+ * with the plugin built with the vector profile. Exits with 1 if a case
+ * fails, 2 if the kernels are not available.
+ */
+public class VectorParity {
+
+    public static final double TOLERANCE = 1e-9;
+    private static final double COEFFICIENT = 2.0;
+    private final ForceAtlas2Data data;
+    private final ForceAtlas2Edges edges;
+    private final VectorKernels kernels;
+    private final Random random;
+    private int failures;
+
+    public VectorParity(int nodes, long seed, VectorKernels kernels) {
+        SyntheticGraph graph = SyntheticGraph.generate(nodes, 8, SyntheticGraph.Degrees.POWER_LAW, seed);
+        data = graph.toData();
+        edges = graph.toEdges(data);
+        this.kernels = kernels;
+        random = new Random(seed);
+    }
+
+    public static void main(String[] args) {
+        int nodes = (args.length > 0) ? (Integer.parseInt(args[0])) : (2003);
+        long seed = (args.length > 1) ? (Long.parseLong(args[1])) : (GraphState.SEED);
+        VectorKernels kernels = VectorKernels.get();
+        if (kernels == null) {
+            System.err.println("Vector kernels not available: build the plugin with -Pvector and run with --add-modules jdk.incubator.vector");
+            System.exit(2);
+        }
+        VectorParity parity = new VectorParity(nodes, seed, kernels);
+        parity.run();
+        System.exit((parity.failures > 0) ? (1) : (0));
+    }
+
+    public void run() {
+        RepulsionForce Repulsion = ForceFactory.builder.buildRepulsion(data, false, COEFFICIENT);
+        AttractionForce Attraction = ForceFactory.builder.buildAttraction(data, true, false, false, COEFFICIENT);
+        int n = data.count;
+        double[] vectorDx = new double[n];
+        double[] vectorDy = new double[n];
+        double[] scalarDx = new double[n];
+        double[] scalarDy = new double[n];
+
+        // Tiles: on the diagonal, then off it, with odd bounds
+        int half = (n / 2) | 1;
+        int[][] tiles = {{1, half, 1, half}, {half, n, 3, half - 2}};
+        for (int[] tile : tiles) {
+            clear(vectorDx, vectorDy, scalarDx, scalarDy);
+            kernels.linRepulsion(data, COEFFICIENT, tile[0], tile[1], tile[2], tile[3], vectorDx, vectorDy);
+            for (int n1 = tile[0]; n1 < tile[1]; n1++) {
+                int end = (tile[0] == tile[2]) ? (n1) : (tile[3]);
+                for (int n2 = tile[2]; n2 < end; n2++) {
+                    Repulsion.apply(n1, n2, scalarDx, scalarDy);
+                }
+            }
+            check("tile [" + tile[0] + ", " + tile[1] + ") x [" + tile[2] + ", " + tile[3] + ")", vectorDx, vectorDy, scalarDx, scalarDy);
+        }
+
+        // Buckets of distinct nodes, of every length around the vector widths
+        int[] bucket = new int[n];
+        for (int i = 0; i < n; i++) {
+            bucket[i] = i;
+        }
+        for (int length = 0; length <= 67; length++) {
+            shuffle(bucket);
+            int node = bucket[0];
+            int from = 1 + random.nextInt(5);
+            int to = Math.min(n, from + length);
+
+            clear(vectorDx, vectorDy, scalarDx, scalarDy);
+            kernels.linRepulsion(data, COEFFICIENT, node, bucket, from, to, vectorDx, vectorDy);
+            for (int i = from; i < to; i++) {
+                Repulsion.apply(node, bucket[i], scalarDx, scalarDy);
+            }
+            check("bucket of " + (to - from), vectorDx, vectorDy, scalarDx, scalarDy);
+
+            clear(vectorDx, vectorDy, scalarDx, scalarDy);
+            kernels.linRepulsion(data, COEFFICIENT, node, bucket, from, to, 2.0, vectorDx, vectorDy);
+            for (int i = from; i < to; i++) {
+                Repulsion.apply(node, bucket[i], 2.0, scalarDx, scalarDy);
+            }
+            check("one-sided bucket of " + (to - from), vectorDx, vectorDy, scalarDx, scalarDy);
+        }
+
+        // Attraction over all the edges, then over an odd range
+        int[][] ranges = {{0, edges.count}, {7, Math.max(7, edges.count - 5)}};
+        for (int[] range : ranges) {
+            clear(vectorDx, vectorDy, scalarDx, scalarDy);
+            kernels.logAttraction(data, COEFFICIENT, edges.source, edges.target, edges.weight, range[0], range[1], vectorDx, vectorDy);
+            for (int e = range[0]; e < range[1]; e++) {
+                Attraction.apply(edges.source[e], edges.target[e], edges.weight[e], scalarDx, scalarDy);
+            }
+            check("log attraction [" + range[0] + ", " + range[1] + ")", vectorDx, vectorDy, scalarDx, scalarDy);
+        }
+        System.out.println((failures == 0) ? ("All cases match") : (failures + " cases differ"));
+    }
+
+    private void check(String name, double[] vectorDx, double[] vectorDy, double[] scalarDx, double[] scalarDy) {
+        double largest = 0;
+        for (int n = 0; n < data.count; n++) {
+            largest = Math.max(largest, Math.max(Math.abs(scalarDx[n]), Math.abs(scalarDy[n])));
+        }
+        double worst = 0;
+        int worstNode = -1;
+        for (int n = 0; n < data.count; n++) {
+            double error = Math.max(Math.abs(vectorDx[n] - scalarDx[n]), Math.abs(vectorDy[n] - scalarDy[n]));
+            if (!(error <= worst)) {
+                worst = error;
+                worstNode = n;
+            }
+        }
+        double relative = (largest > 0) ? (worst / largest) : (worst);
+        if (!(relative <= TOLERANCE)) {
+            failures++;
+            System.out.println(String.format(Locale.US, "FAIL %s: relative error %.3g at node %d (vector %g, %g, scalar %g, %g)", name, relative, worstNode,
+                    vectorDx[worstNode], vectorDy[worstNode], scalarDx[worstNode], scalarDy[worstNode]));
+        }
+    }
+
+    private void shuffle(int[] nodes) {
+        for (int i = nodes.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int node = nodes[i];
+            nodes[i] = nodes[j];
+            nodes[j] = node;
+        }
+    }
+
+    private static void clear(double[]... arrays) {
+        for (double[] array : arrays) {
+            Arrays.fill(array, 0);
+        }
+    }
+}
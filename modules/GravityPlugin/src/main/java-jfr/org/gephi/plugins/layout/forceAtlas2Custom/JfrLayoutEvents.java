@@ -0,0 +1,191 @@
+/*
+Copyright 2008-2011 Gephi
+Authors : Mathieu Jacomy <mathieu.jacomy@gmail.com>
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+ */
+package org.gephi.plugins.layout.forceAtlas2Custom;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * LayoutEvents as JFR events, under Gephi / ForceAtlas2 in the event browser.
+ * Events are only allocated when enabled: isEnabled() is checked on a new
+ * event, which the JIT removes when it is not.
+ */
+public class JfrLayoutEvents extends LayoutEvents {
+
+    @Name("org.gephi.ForceAtlas2.Iteration")
+    @Label("Layout Iteration")
+    @Description("One call of goAlgo")
+    @Category({"Gephi", "ForceAtlas2"})
+    @Enabled(false)
+    @StackTrace(false)
+    static class IterationEvent extends Event {
+
+        @Label("Nodes")
+        int nodeCount;
+
+        @Label("Edges")
+        int edgeCount;
+
+        @Label("Speed")
+        double speed;
+
+        @Label("Total Swinging")
+        double totalSwinging;
+
+        @Label("Total Effective Traction")
+        double totalEffectiveTraction;
+
+        @Label("Barnes Hut")
+        boolean barnesHutOptimize;
+
+        @Label("Barnes Hut Theta")
+        double barnesHutTheta;
+    }
+
+    @Name("org.gephi.ForceAtlas2.Phase")
+    @Label("Layout Phase")
+    @Description("One phase of a layout iteration")
+    @Category({"Gephi", "ForceAtlas2"})
+    @Enabled(false)
+    @StackTrace(false)
+    static class PhaseEvent extends Event {
+
+        @Label("Phase")
+        String phase;
+    }
+
+    @Name("org.gephi.ForceAtlas2.NodesTask")
+    @Label("Nodes Task")
+    @Description("Repulsion and gravity of a range of nodes, on one thread")
+    @Category({"Gephi", "ForceAtlas2"})
+    @Enabled(false)
+    @StackTrace(false)
+    static class TaskEvent extends Event {
+
+        @Label("First Node")
+        int from;
+
+        @Label("Nodes")
+        int size;
+    }
+
+    @Override
+    public Object beginIteration() {
+        IterationEvent event = new IterationEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void endIteration(Object event, int nodeCount, int edgeCount, double speed, double totalSwinging, double totalEffectiveTraction, boolean barnesHutOptimize, double barnesHutTheta) {
+        if (event == null) {
+            return;
+        }
+        IterationEvent iteration = (IterationEvent) event;
+        iteration.end();
+        if (iteration.shouldCommit()) {
+            iteration.nodeCount = nodeCount;
+            iteration.edgeCount = edgeCount;
+            iteration.speed = speed;
+            iteration.totalSwinging = totalSwinging;
+            iteration.totalEffectiveTraction = totalEffectiveTraction;
+            iteration.barnesHutOptimize = barnesHutOptimize;
+            iteration.barnesHutTheta = barnesHutTheta;
+            iteration.commit();
+        }
+    }
+
+    @Override
+    public Object beginPhase() {
+        PhaseEvent event = new PhaseEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void endPhase(Object event, LayoutMetrics.Phase phase) {
+        if (event == null) {
+            return;
+        }
+        PhaseEvent phaseEvent = (PhaseEvent) event;
+        phaseEvent.end();
+        if (phaseEvent.shouldCommit()) {
+            phaseEvent.phase = phase.name();
+            phaseEvent.commit();
+        }
+    }
+
+    @Override
+    public Object beginTask() {
+        TaskEvent event = new TaskEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void endTask(Object event, int from, int to) {
+        if (event == null) {
+            return;
+        }
+        TaskEvent task = (TaskEvent) event;
+        task.end();
+        if (task.shouldCommit()) {
+            task.from = from;
+            task.size = to - from;
+            task.commit();
+        }
+    }
+}
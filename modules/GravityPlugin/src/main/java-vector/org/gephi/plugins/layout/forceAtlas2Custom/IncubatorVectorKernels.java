@@ -0,0 +1,225 @@
+/*
+Copyright 2008-2011 Gephi
+Authors : Mathieu Jacomy <mathieu.jacomy@gmail.com>
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+ */
+package org.gephi.plugins.layout.forceAtlas2Custom;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * VectorKernels on the Java Vector API. Positions are loaded as floats,
+ * subtracted in float as the scalar forces do, and the differences widened, so
+ * that a float vector has as many lanes as the preferred double vector.
+ * Bucket nodes are gathered through their indices, and scattered back for the
+ * symmetric model, which is correct as long as they are distinct.
+ * Edges share their nodes, so the attraction is computed by vectors but added
+ * to the nodes one edge at a time. The ends of the ranges are done in scalar.
+ */
+public class IncubatorVectorKernels extends VectorKernels {
+
+    private static final VectorSpecies<Double> D = DoubleVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Float> F = VectorSpecies.of(float.class, VectorShape.forBitSize(D.vectorBitSize() / 2));
+    private static final int L = D.length();
+
+    private static DoubleVector widen(FloatVector v) {
+        return (DoubleVector) v.convertShape(VectorOperators.F2D, D, 0);
+    }
+
+    // Same rounding as the scalar forces: (float) Math.sqrt(distance2)
+    private static DoubleVector distance(DoubleVector distance2) {
+        FloatVector rounded = (FloatVector) distance2.lanewise(VectorOperators.SQRT).convertShape(VectorOperators.D2F, F, 0);
+        return widen(rounded);
+    }
+
+    private static double distance(double distance2) {
+        return (float) Math.sqrt(distance2);
+    }
+
+    @Override
+    public void linRepulsion(ForceAtlas2Data data, double coefficient, int from1, int to1, int from2, int to2, double[] dx, double[] dy) {
+        float[] x = data.x;
+        float[] y = data.y;
+        double[] mass = data.mass;
+        DoubleVector zero = DoubleVector.zero(D);
+        for (int n1 = from1; n1 < to1; n1++) {
+            int end = (from1 == from2) ? (n1) : (to2);
+            float x1 = x[n1];
+            float y1 = y[n1];
+            double m1 = coefficient * mass[n1];
+            FloatVector x1s = FloatVector.broadcast(F, x1);
+            FloatVector y1s = FloatVector.broadcast(F, y1);
+            DoubleVector sumX = zero;
+            DoubleVector sumY = zero;
+            int n2 = from2;
+            for (; n2 <= end - L; n2 += L) {
+                DoubleVector xDist = widen(x1s.sub(FloatVector.fromArray(F, x, n2)));
+                DoubleVector yDist = widen(y1s.sub(FloatVector.fromArray(F, y, n2)));
+                DoubleVector distance = distance(xDist.mul(xDist).add(yDist.mul(yDist)));
+                VectorMask<Double> positive = distance.compare(VectorOperators.GT, 0);
+                DoubleVector factor = zero.blend(DoubleVector.fromArray(D, mass, n2).mul(m1).div(distance).div(distance), positive);
+                DoubleVector fx = xDist.mul(factor);
+                DoubleVector fy = yDist.mul(factor);
+                sumX = sumX.add(fx);
+                sumY = sumY.add(fy);
+                DoubleVector.fromArray(D, dx, n2).sub(fx).intoArray(dx, n2);
+                DoubleVector.fromArray(D, dy, n2).sub(fy).intoArray(dy, n2);
+            }
+            double fx1 = sumX.reduceLanes(VectorOperators.ADD);
+            double fy1 = sumY.reduceLanes(VectorOperators.ADD);
+            for (; n2 < end; n2++) {
+                double xDist = x1 - x[n2];
+                double yDist = y1 - y[n2];
+                double distance = distance(xDist * xDist + yDist * yDist);
+                if (distance > 0) {
+                    double factor = m1 * mass[n2] / distance / distance;
+                    fx1 += xDist * factor;
+                    fy1 += yDist * factor;
+                    dx[n2] -= xDist * factor;
+                    dy[n2] -= yDist * factor;
+                }
+            }
+            dx[n1] += fx1;
+            dy[n1] += fy1;
+        }
+    }
+
+    @Override
+    public void linRepulsion(ForceAtlas2Data data, double coefficient, int n, int[] nodes, int from, int to, double[] dx, double[] dy) {
+        bucket(data, coefficient * data.mass[n], n, nodes, from, to, true, dx, dy);
+    }
+
+    @Override
+    public void linRepulsion(ForceAtlas2Data data, double coefficient, int n, int[] nodes, int from, int to, double weight, double[] dx, double[] dy) {
+        bucket(data, weight * coefficient * data.mass[n], n, nodes, from, to, false, dx, dy);
+    }
+
+    private void bucket(ForceAtlas2Data data, double m1, int n, int[] nodes, int from, int to, boolean symmetric, double[] dx, double[] dy) {
+        float[] x = data.x;
+        float[] y = data.y;
+        double[] mass = data.mass;
+        float x1 = x[n];
+        float y1 = y[n];
+        FloatVector x1s = FloatVector.broadcast(F, x1);
+        FloatVector y1s = FloatVector.broadcast(F, y1);
+        DoubleVector zero = DoubleVector.zero(D);
+        DoubleVector sumX = zero;
+        DoubleVector sumY = zero;
+        int i = from;
+        for (; i <= to - L; i += L) {
+            DoubleVector xDist = widen(x1s.sub(FloatVector.fromArray(F, x, 0, nodes, i)));
+            DoubleVector yDist = widen(y1s.sub(FloatVector.fromArray(F, y, 0, nodes, i)));
+            DoubleVector distance = distance(xDist.mul(xDist).add(yDist.mul(yDist)));
+            VectorMask<Double> positive = distance.compare(VectorOperators.GT, 0);
+            DoubleVector factor = zero.blend(DoubleVector.fromArray(D, mass, 0, nodes, i).mul(m1).div(distance).div(distance), positive);
+            DoubleVector fx = xDist.mul(factor);
+            DoubleVector fy = yDist.mul(factor);
+            sumX = sumX.add(fx);
+            sumY = sumY.add(fy);
+            if (symmetric) {
+                DoubleVector.fromArray(D, dx, 0, nodes, i).sub(fx).intoArray(dx, 0, nodes, i);
+                DoubleVector.fromArray(D, dy, 0, nodes, i).sub(fy).intoArray(dy, 0, nodes, i);
+            }
+        }
+        double fx1 = sumX.reduceLanes(VectorOperators.ADD);
+        double fy1 = sumY.reduceLanes(VectorOperators.ADD);
+        for (; i < to; i++) {
+            int n2 = nodes[i];
+            double xDist = x1 - x[n2];
+            double yDist = y1 - y[n2];
+            double distance = distance(xDist * xDist + yDist * yDist);
+            if (distance > 0) {
+                double factor = m1 * mass[n2] / distance / distance;
+                fx1 += xDist * factor;
+                fy1 += yDist * factor;
+                if (symmetric) {
+                    dx[n2] -= xDist * factor;
+                    dy[n2] -= yDist * factor;
+                }
+            }
+        }
+        dx[n] += fx1;
+        dy[n] += fy1;
+    }
+
+    @Override
+    public void logAttraction(ForceAtlas2Data data, double coefficient, int[] source, int[] target, double[] weight, int from, int to, double[] dx, double[] dy) {
+        float[] x = data.x;
+        float[] y = data.y;
+        double[] forceX = new double[L];
+        double[] forceY = new double[L];
+        DoubleVector zero = DoubleVector.zero(D);
+        int k = from;
+        for (; k <= to - L; k += L) {
+            DoubleVector xDist = widen(FloatVector.fromArray(F, x, 0, source, k).sub(FloatVector.fromArray(F, x, 0, target, k)));
+            DoubleVector yDist = widen(FloatVector.fromArray(F, y, 0, source, k).sub(FloatVector.fromArray(F, y, 0, target, k)));
+            DoubleVector distance = distance(xDist.mul(xDist).add(yDist.mul(yDist)));
+            VectorMask<Double> positive = distance.compare(VectorOperators.GT, 0);
+            DoubleVector factor = DoubleVector.fromArray(D, weight, k).mul(-coefficient);
+            factor = zero.blend(factor.mul(distance.add(1).lanewise(VectorOperators.LOG)).div(distance), positive);
+            xDist.mul(factor).intoArray(forceX, 0);
+            yDist.mul(factor).intoArray(forceY, 0);
+            for (int lane = 0; lane < L; lane++) {
+                dx[source[k + lane]] += forceX[lane];
+                dy[source[k + lane]] += forceY[lane];
+                dx[target[k + lane]] -= forceX[lane];
+                dy[target[k + lane]] -= forceY[lane];
+            }
+        }
+        for (; k < to; k++) {
+            int n1 = source[k];
+            int n2 = target[k];
+            double xDist = x[n1] - x[n2];
+            double yDist = y[n1] - y[n2];
+            double distance = distance(xDist * xDist + yDist * yDist);
+            if (distance > 0) {
+                double factor = -coefficient * weight[k] * Math.log(1 + distance) / distance;
+                dx[n1] += xDist * factor;
+                dy[n1] += yDist * factor;
+                dx[n2] -= xDist * factor;
+                dy[n2] -= yDist * factor;
+            }
+        }
+    }
+}
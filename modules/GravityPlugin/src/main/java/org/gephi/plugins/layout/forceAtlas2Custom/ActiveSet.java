@@ -0,0 +1,366 @@
+/*
+Copyright 2008-2011 Gephi
+Authors : Mathieu Jacomy <mathieu.jacomy@gmail.com>
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+ */
+package org.gephi.plugins.layout.forceAtlas2Custom;
+
+import java.util.Arrays;
+
+/**
+ * Nodes of a layout that still move. A node that moved less than the sleep
+ * threshold for a number of iterations in a row is put to sleep: it stays in
+ * the Barnes Hut approximation as mass, but its force is not computed and it
+ * does not move. It wakes up when a neighbour moved more than WAKE_FACTOR
+ * times the sleep threshold, when the mass center of its cell moved that
+ * much, or after a number of iterations asleep. Cells are those of a uniform
+ * grid of about NODES_PER_CELL nodes per cell over the layout, the same for
+ * all the approximation backends.
+ * <p>
+ * The moves of the awake nodes are recorded concurrently by the displacement
+ * tasks, each node writing its own. The sleeping and waking then happen once
+ * per iteration in update(), by parallel tasks over the nodes. Only the nodes
+ * that moved more than the wake threshold visit their neighbours, through the
+ * rows of the edges and an index of the edges by target. Cell mass centers
+ * are summed in a fixed number of buffers, so that they do not depend on the
+ * number of threads.
+ */
+public class ActiveSet {
+
+    public static final double WAKE_FACTOR = 5;
+    private static final int NODES_PER_CELL = 16;
+    private static final int CELL_BUFFERS = 8;
+    // Below this number of nodes per task, the work is not split further
+    private static final int MIN_TASK_SIZE = 1024;
+    private final ForceAtlas2Data data;
+    private final int version;
+    private final boolean[] asleep;
+    // Iterations in a row under the threshold when awake, iterations asleep otherwise
+    private final int[] iterations;
+    private final double[] movedX;
+    private final double[] movedY;
+    // Nodes that moved more than the wake threshold in this iteration
+    private final boolean[] moving;
+    private final int[] cellOf;
+    private int awakeCount;
+    // Sources of the edges by target, for the rows of the edges they were
+    // built from; patched edges are visited apart
+    private int[] indexedOffsets;
+    private int[] inOffsets = new int[0];
+    private int[] inSources = new int[0];
+    // State of the current update, read by its tasks
+    private ForceAtlas2Edges edges;
+    private double sleepThreshold;
+    private double wakeSquared;
+    private int sleepIterations;
+    private int wakeInterval;
+    private int taskCount;
+    private int bufferCount;
+    private float[] taskBounds = new float[0];
+    private int[] taskAwake = new int[0];
+    private float minX;
+    private float minY;
+    private double cellWidth;
+    private double cellHeight;
+    private int side;
+    private double[][] bufferMass = new double[0][];
+    private double[][] bufferMovedX = new double[0][];
+    private double[][] bufferMovedY = new double[0][];
+    private boolean[] cellMoving = new boolean[0];
+    private final RangeTask sleepTask = new RangeTask() {
+        @Override
+        public void run(int fromTask, int toTask) {
+            for (int t = fromTask; t < toTask; t++) {
+                int from = (int) ((long) data.count * t / taskCount);
+                int to = (int) ((long) data.count * (t + 1) / taskCount);
+                float taskMinX = Float.MAX_VALUE;
+                float taskMinY = Float.MAX_VALUE;
+                float taskMaxX = -Float.MAX_VALUE;
+                float taskMaxY = -Float.MAX_VALUE;
+                for (int n = from; n < to; n++) {
+                    double moved = movedX[n] * movedX[n] + movedY[n] * movedY[n];
+                    if (asleep[n]) {
+                        if (++iterations[n] >= wakeInterval) {
+                            wake(n);
+                        }
+                    } else if (moved < sleepThreshold * sleepThreshold) {
+                        if (++iterations[n] >= sleepIterations) {
+                            asleep[n] = true;
+                            iterations[n] = 0;
+                            movedX[n] = 0;
+                            movedY[n] = 0;
+                            moved = 0;
+                        }
+                    } else {
+                        iterations[n] = 0;
+                    }
+                    moving[n] = moved > wakeSquared;
+                    taskMinX = Math.min(taskMinX, data.x[n]);
+                    taskMinY = Math.min(taskMinY, data.y[n]);
+                    taskMaxX = Math.max(taskMaxX, data.x[n]);
+                    taskMaxY = Math.max(taskMaxY, data.y[n]);
+                }
+                taskBounds[4 * t] = taskMinX;
+                taskBounds[4 * t + 1] = taskMinY;
+                taskBounds[4 * t + 2] = taskMaxX;
+                taskBounds[4 * t + 3] = taskMaxY;
+            }
+        }
+    };
+    // Sleeping nodes did not move, so waking them up does not wake up their
+    // own neighbours in the same iteration
+    private final RangeTask neighboursTask = new RangeTask() {
+        @Override
+        public void run(int from, int to) {
+            for (int n = from; n < to; n++) {
+                if (moving[n]) {
+                    for (int e = edges.offsets[n]; e < edges.offsets[n + 1]; e++) {
+                        wakeAsleep(edges.target[e]);
+                    }
+                    for (int i = inOffsets[n]; i < inOffsets[n + 1]; i++) {
+                        wakeAsleep(inSources[i]);
+                    }
+                }
+            }
+        }
+    };
+    private final RangeTask cellTask = new RangeTask() {
+        @Override
+        public void run(int fromBuffer, int toBuffer) {
+            for (int b = fromBuffer; b < toBuffer; b++) {
+                int from = (int) ((long) data.count * b / bufferCount);
+                int to = (int) ((long) data.count * (b + 1) / bufferCount);
+                double[] mass = bufferMass[b];
+                double[] sumX = bufferMovedX[b];
+                double[] sumY = bufferMovedY[b];
+                Arrays.fill(mass, 0, side * side, 0);
+                Arrays.fill(sumX, 0, side * side, 0);
+                Arrays.fill(sumY, 0, side * side, 0);
+                for (int n = from; n < to; n++) {
+                    int c = cell(n);
+                    cellOf[n] = c;
+                    mass[c] += data.mass[n];
+                    sumX[c] += data.mass[n] * movedX[n];
+                    sumY[c] += data.mass[n] * movedY[n];
+                }
+            }
+        }
+    };
+    private final RangeTask cellMoveTask = new RangeTask() {
+        @Override
+        public void run(int from, int to) {
+            for (int c = from; c < to; c++) {
+                double mass = 0;
+                double sumX = 0;
+                double sumY = 0;
+                for (int b = 0; b < bufferCount; b++) {
+                    mass += bufferMass[b][c];
+                    sumX += bufferMovedX[b][c];
+                    sumY += bufferMovedY[b][c];
+                }
+                double x = sumX / mass;
+                double y = sumY / mass;
+                cellMoving[c] = x * x + y * y > wakeSquared;
+            }
+        }
+    };
+    private final RangeTask cellWakeTask = new RangeTask() {
+        @Override
+        public void run(int fromTask, int toTask) {
+            for (int t = fromTask; t < toTask; t++) {
+                int from = (int) ((long) data.count * t / taskCount);
+                int to = (int) ((long) data.count * (t + 1) / taskCount);
+                int awake = 0;
+                for (int n = from; n < to; n++) {
+                    if (asleep[n] && cellMoving[cellOf[n]]) {
+                        wake(n);
+                    }
+                    if (!asleep[n]) {
+                        awake++;
+                    }
+                }
+                taskAwake[t] = awake;
+            }
+        }
+    };
+
+    public ActiveSet(ForceAtlas2Data data) {
+        this.data = data;
+        this.version = data.version;
+        asleep = new boolean[data.count];
+        iterations = new int[data.count];
+        movedX = new double[data.count];
+        movedY = new double[data.count];
+        moving = new boolean[data.count];
+        cellOf = new int[data.count];
+        awakeCount = data.count;
+    }
+
+    public boolean isBuiltFor(ForceAtlas2Data data) {
+        return this.data == data && version == data.version && asleep.length == data.count;
+    }
+
+    public boolean isAwake(int n) {
+        return !asleep[n];
+    }
+
+    /**
+     * Records the move of awake node n in this iteration.
+     */
+    public void setMoved(int n, double x, double y) {
+        movedX[n] = x;
+        movedY[n] = y;
+    }
+
+    /**
+     * Puts to sleep and wakes up the nodes after the moves of an iteration,
+     * on the threads of the layout.
+     */
+    public void update(ForceAtlas2 layout, ForceAtlas2Edges edges, double sleepThreshold, int sleepIterations, int wakeInterval) {
+        int count = data.count;
+        if (count == 0) {
+            awakeCount = 0;
+            return;
+        }
+        this.edges = edges;
+        this.sleepThreshold = sleepThreshold;
+        this.wakeSquared = WAKE_FACTOR * sleepThreshold * WAKE_FACTOR * sleepThreshold;
+        this.sleepIterations = sleepIterations;
+        this.wakeInterval = wakeInterval;
+        taskCount = Math.max(1, Math.min(layout.getTaskCount(), count / MIN_TASK_SIZE));
+        if (taskAwake.length < taskCount) {
+            taskAwake = new int[taskCount];
+            taskBounds = new float[4 * taskCount];
+        }
+        layout.runRange(sleepTask, taskCount, taskCount);
+
+        // Neighbours of the nodes that moved
+        indexEdges(edges);
+        layout.runRange(neighboursTask, count, taskCount);
+        for (int e = edges.count - edges.getPatchCount(); e < edges.count; e++) {
+            int n1 = edges.source[e];
+            int n2 = edges.target[e];
+            if (moving[n1]) {
+                wakeAsleep(n2);
+            } else if (moving[n2]) {
+                wakeAsleep(n1);
+            }
+        }
+
+        // Cells, by the move of their mass center
+        minX = Float.MAX_VALUE;
+        minY = Float.MAX_VALUE;
+        float maxX = -Float.MAX_VALUE;
+        float maxY = -Float.MAX_VALUE;
+        for (int t = 0; t < taskCount; t++) {
+            minX = Math.min(minX, taskBounds[4 * t]);
+            minY = Math.min(minY, taskBounds[4 * t + 1]);
+            maxX = Math.max(maxX, taskBounds[4 * t + 2]);
+            maxY = Math.max(maxY, taskBounds[4 * t + 3]);
+        }
+        side = Math.max(1, (int) Math.sqrt((double) count / NODES_PER_CELL));
+        cellWidth = Math.max((maxX - minX) / side, Double.MIN_NORMAL);
+        cellHeight = Math.max((maxY - minY) / side, Double.MIN_NORMAL);
+        bufferCount = Math.max(1, Math.min(CELL_BUFFERS, count / MIN_TASK_SIZE));
+        if (bufferMass.length < bufferCount || bufferMass[0].length < side * side) {
+            bufferMass = new double[bufferCount][side * side];
+            bufferMovedX = new double[bufferCount][side * side];
+            bufferMovedY = new double[bufferCount][side * side];
+            cellMoving = new boolean[side * side];
+        }
+        layout.runRange(cellTask, bufferCount, bufferCount);
+        layout.runRange(cellMoveTask, side * side, Math.max(1, Math.min(taskCount, side * side / MIN_TASK_SIZE)));
+        layout.runRange(cellWakeTask, taskCount, taskCount);
+
+        awakeCount = 0;
+        for (int t = 0; t < taskCount; t++) {
+            awakeCount += taskAwake[t];
+        }
+        this.edges = null;
+    }
+
+    /*
+     * Index of the edges by target, built again when the rows of the edges
+     * were loaded or permuted.
+     */
+    private void indexEdges(ForceAtlas2Edges edges) {
+        if (indexedOffsets == edges.offsets) {
+            return;
+        }
+        int count = data.count;
+        int rowEdges = edges.count - edges.getPatchCount();
+        inOffsets = new int[count + 1];
+        inSources = new int[rowEdges];
+        for (int e = 0; e < rowEdges; e++) {
+            inOffsets[edges.target[e] + 1]++;
+        }
+        for (int n = 0; n < count; n++) {
+            inOffsets[n + 1] += inOffsets[n];
+        }
+        int[] cursor = Arrays.copyOf(inOffsets, count);
+        for (int e = 0; e < rowEdges; e++) {
+            inSources[cursor[edges.target[e]]++] = edges.source[e];
+        }
+        indexedOffsets = edges.offsets;
+    }
+
+    private int cell(int n) {
+        int i = Math.min(side - 1, (int) ((data.x[n] - minX) / cellWidth));
+        int j = Math.min(side - 1, (int) ((data.y[n] - minY) / cellHeight));
+        return j * side + i;
+    }
+
+    private void wake(int n) {
+        asleep[n] = false;
+        iterations[n] = 0;
+    }
+
+    private void wakeAsleep(int n) {
+        if (asleep[n]) {
+            wake(n);
+        }
+    }
+
+    /**
+     * Nodes awake for the next iteration.
+     */
+    public int getAwakeCount() {
+        return awakeCount;
+    }
+}
@@ -0,0 +1,210 @@
+/*
+Copyright 2008-2011 Gephi
+Authors : Mathieu Jacomy <mathieu.jacomy@gmail.com>
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+ */
+package org.gephi.plugins.layout.forceAtlas2Custom;
+
+import java.util.Random;
+import org.gephi.plugins.layout.forceAtlas2Custom.ForceFactory.RepulsionForce;
+
+/**
+ * Adapts the theta of the Barnes Hut optimization to hold a target relative
+ * error of the repulsion. Every INTERVAL iterations, the approximated
+ * repulsion of a random sample of nodes is compared to their exact repulsion
+ * from all the nodes, and the relative error is the norm of the differences
+ * over the norm of the exact forces. The error of mass center approximations
+ * grows about as theta^2, which would scale theta by sqrt(target / error); the
+ * measure of a small sample is noisy though, so only half of that correction
+ * is made, (target / error)^(1/4), within MAX_STEP per adjustment.
+ * <p>
+ * The sample is measured as a RangeTask over its indices: each sampled node
+ * only writes its own force.
+ */
+public class AdaptiveTheta implements RangeTask {
+
+    public static final int INTERVAL = 10;
+    public static final int SAMPLE_SIZE = 64;
+    public static final double MIN_THETA = 0.1;
+    public static final double MAX_THETA = 4;
+    private static final double MAX_STEP = 1.25;
+    private final Random random = new Random(0);
+    private double theta = Double.NaN;
+    private double error = Double.NaN;
+    private int iterationsSinceSample;
+    // Current measure
+    private ForceAtlas2Data data;
+    private ApproximateRepulsion approximation;
+    private RepulsionForce Repulsion;
+    private RepulsionForce NodeRepulsion;
+    private int[] sample = new int[SAMPLE_SIZE];
+    private int sampleCount;
+    private final double[] errorNorms = new double[SAMPLE_SIZE];
+    private final double[] forceNorms = new double[SAMPLE_SIZE];
+    private double[] dx = new double[0];
+    private double[] dy = new double[0];
+
+    /**
+     * Forgets the adapted theta, which starts again from the setting.
+     */
+    public void reset() {
+        theta = Double.NaN;
+        error = Double.NaN;
+        iterationsSinceSample = 0;
+    }
+
+    /**
+     * Theta for the coming iteration, starting from the given setting.
+     */
+    public double getTheta(double initialTheta) {
+        if (Double.isNaN(theta)) {
+            theta = Math.max(MIN_THETA, Math.min(MAX_THETA, initialTheta));
+        }
+        return theta;
+    }
+
+    /**
+     * Counts an iteration and returns true if the error should be measured on
+     * this one.
+     */
+    public boolean isDue() {
+        boolean due = iterationsSinceSample == 0;
+        iterationsSinceSample = (iterationsSinceSample + 1) % INTERVAL;
+        return due;
+    }
+
+    /**
+     * Draws the sample of nodes to measure, the approximation being up to
+     * date. Run the task over getSampleCount() indices, then adjust().
+     */
+    public void prepare(ForceAtlas2Data data, ApproximateRepulsion approximation, RepulsionForce Repulsion) {
+        this.data = data;
+        this.approximation = approximation;
+        this.Repulsion = Repulsion;
+        // Each pair of the approximation counted once, on the node queried
+        NodeRepulsion = ForceFactory.builder.buildOwnerRepulsion(Repulsion, 1);
+        if (dx.length != data.count) {
+            dx = new double[data.count];
+            dy = new double[data.count];
+        }
+        sampleCount = 0;
+        if (data.count <= SAMPLE_SIZE) {
+            for (int n = 0; n < data.count; n++) {
+                sample[sampleCount++] = n;
+            }
+            return;
+        }
+        while (sampleCount < SAMPLE_SIZE) {
+            int n = random.nextInt(data.count);
+            boolean drawn = false;
+            for (int i = 0; i < sampleCount && !drawn; i++) {
+                drawn = sample[i] == n;
+            }
+            if (!drawn) {
+                sample[sampleCount++] = n;
+            }
+        }
+    }
+
+    public int getSampleCount() {
+        return sampleCount;
+    }
+
+    @Override
+    public void run(int from, int to) {
+        for (int i = from; i < to; i++) {
+            int n = sample[i];
+            dx[n] = 0;
+            dy[n] = 0;
+            approximation.applyForce(n, NodeRepulsion, theta, dx, dy);
+            double approximateX = dx[n];
+            double approximateY = dy[n];
+            dx[n] = 0;
+            dy[n] = 0;
+            for (int m = 0; m < data.count; m++) {
+                if (m != n) {
+                    Repulsion.apply(n, m, 1, dx, dy);
+                }
+            }
+            double errorX = approximateX - dx[n];
+            double errorY = approximateY - dy[n];
+            errorNorms[i] = errorX * errorX + errorY * errorY;
+            forceNorms[i] = dx[n] * dx[n] + dy[n] * dy[n];
+        }
+    }
+
+    /**
+     * Sets the error measured on the sample, and adapts theta to bring it to
+     * the target.
+     */
+    public void adjust(double targetError) {
+        double errorNorm = 0;
+        double forceNorm = 0;
+        for (int i = 0; i < sampleCount; i++) {
+            errorNorm += errorNorms[i];
+            forceNorm += forceNorms[i];
+        }
+        data = null;
+        approximation = null;
+        Repulsion = null;
+        NodeRepulsion = null;
+        if (forceNorm <= 0) {
+            return;
+        }
+        error = Math.sqrt(errorNorm / forceNorm);
+        double step = (error > 0) ? (Math.pow(targetError / error, 0.25)) : (MAX_STEP);
+        step = Math.max(1 / MAX_STEP, Math.min(MAX_STEP, step));
+        theta = Math.max(MIN_THETA, Math.min(MAX_THETA, theta * step));
+    }
+
+    /**
+     * Theta used by the last iterations, NaN before the first one.
+     */
+    public double getTheta() {
+        return theta;
+    }
+
+    /**
+     * Relative error of the repulsion measured on the last sample, with the
+     * theta in use before its adjustment.
+     */
+    public double getError() {
+        return error;
+    }
+}
@@ -0,0 +1,116 @@
+/*
+Copyright 2008-2011 Gephi
+Authors : Mathieu Jacomy <mathieu.jacomy@gmail.com>
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+ */
+package org.gephi.plugins.layout.forceAtlas2Custom;
+
+import org.gephi.plugins.layout.forceAtlas2Custom.ForceFactory.RepulsionForce;
+
+/**
+ * Approximation of the repulsion between all the nodes (Barnes Hut
+ * optimization). The approximation is updated once per iteration, then
+ * queried concurrently for each node.
+ */
+public abstract class ApproximateRepulsion {
+
+    public enum Backend {
+
+        REGION, PERSISTENT_QUADTREE, FLAT_QUADTREE, MORTON_QUADTREE, FAST_MULTIPOLE, PARTICLE_MESH
+    }
+
+    protected final ForceAtlas2Data data;
+
+    public ApproximateRepulsion(ForceAtlas2Data data) {
+        this.data = data;
+    }
+
+    public static ApproximateRepulsion build(Backend backend, ForceAtlas2Data data) {
+        switch (backend) {
+            case PERSISTENT_QUADTREE:
+                return new PersistentQuadTree(data);
+            case FLAT_QUADTREE:
+                return new FlatQuadTree(data);
+            case MORTON_QUADTREE:
+                return new MortonQuadTree(data);
+            case FAST_MULTIPOLE:
+                return new FastMultipole(data);
+            case PARTICLE_MESH:
+                return new ParticleMesh(data);
+            default:
+                return new RegionTree(data);
+        }
+    }
+
+    public abstract Backend getBackend();
+
+    /**
+     * Returns true if the node-node repulsion of neighbour nodes is applied
+     * with the symmetric model, on both nodes of each pair queried.
+     */
+    public boolean isSymmetric() {
+        return true;
+    }
+
+    /**
+     * Returns true if the accuracy of the approximation is set by the theta
+     * given to applyForce.
+     */
+    public boolean isThetaUsed() {
+        return true;
+    }
+
+    /**
+     * Reads the settings of the backend from the layout.
+     */
+    public void configure(ForceAtlas2 layout) {
+    }
+
+    /**
+     * Builds or updates the approximation for the current positions and
+     * masses of the nodes.
+     */
+    public abstract void update();
+
+    /**
+     * Accumulates the approximated repulsion of all the nodes on node n.
+     * Returns the number of forces applied, a measure of the cost for n.
+     */
+    public abstract int applyForce(int n, RepulsionForce Force, double theta, double[] dx, double[] dy);
+}
@@ -0,0 +1,247 @@
+/*
+Copyright 2008-2011 Gephi
+Authors : Mathieu Jacomy <mathieu.jacomy@gmail.com>
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+ */
+package org.gephi.plugins.layout.forceAtlas2Custom;
+
+import java.util.Arrays;
+
+/**
+ * Decides when a layout has converged, from the measures of its iterations:
+ * the swinging to effective traction ratio, the mean distance the nodes moved,
+ * and optionally an estimate of the energy of the layout. Each is smoothed by
+ * an exponential moving average over WINDOW iterations.
+ * <p>
+ * The layout has converged when, after at least WINDOW iterations, it is not
+ * erratic (smoothed ratio at most ERRATIC_RATIO, the threshold above which
+ * goAlgo cuts the speed) and the smoothed displacement fell under tolerance
+ * times its peak. With the energy, it is the change of the smoothed energy
+ * over the last WINDOW iterations that must fall under the square of the
+ * tolerance times its peak: the nodes move by the speed times their force, so
+ * the energy changes as the square of the displacement. Changes of the energy
+ * are compared rather than the energy itself, whose repulsion term depends on
+ * the scale of the layout and may cross 0. Iteration and time budgets stop the
+ * layout whether it converged or not.
+ */
+public class ConvergenceMonitor {
+
+    public enum Stop {
+        NONE,
+        CONVERGED,
+        ITERATIONS,
+        TIME
+    }
+
+    public static final int WINDOW = 20;
+    public static final double ERRATIC_RATIO = 2.0;
+    private static final double SMOOTHING = 2.0 / (WINDOW + 1);
+    private double tolerance;
+    private int maxIterations;
+    private double maxTime;
+    // Budgets, over all the iterations since the start
+    private int iterations;
+    private long startTime;
+    // Convergence, over the iterations since the last restart
+    private int windowIterations;
+    private double ratio;
+    private double displacement;
+    private double peakDisplacement;
+    // Smoothed energies of the last WINDOW iterations that had one, since
+    // the energy is estimated without interruption
+    private final double[] energies = new double[WINDOW];
+    private int energyIterations;
+    private double energy = Double.NaN;
+    private double peakEnergyChange;
+    private double energyChange = Double.NaN;
+    private Stop stop = Stop.NONE;
+
+    /**
+     * Sets the tolerance, the maximum number of iterations and the maximum
+     * time in seconds. A budget of 0 is no limit.
+     */
+    public void configure(double tolerance, int maxIterations, double maxTime) {
+        this.tolerance = tolerance;
+        this.maxIterations = maxIterations;
+        this.maxTime = maxTime;
+    }
+
+    /**
+     * Starts counting iterations and time from now.
+     */
+    public void reset() {
+        iterations = 0;
+        startTime = System.nanoTime();
+        stop = Stop.NONE;
+        restart();
+    }
+
+    /**
+     * Forgets the convergence measures, when the layout is disturbed (graph
+     * changes, new multilevel level) and convergence must be seen again.
+     * Budgets keep counting.
+     */
+    public void restart() {
+        windowIterations = 0;
+        ratio = 0;
+        displacement = 0;
+        peakDisplacement = 0;
+        restartEnergy();
+    }
+
+    private void restartEnergy() {
+        energyIterations = 0;
+        Arrays.fill(energies, Double.NaN);
+        energy = Double.NaN;
+        peakEnergyChange = 0;
+        energyChange = Double.NaN;
+    }
+
+    /**
+     * Counts an iteration toward the budgets only.
+     */
+    public void countIteration() {
+        iterations++;
+        checkBudgets();
+    }
+
+    /**
+     * Counts an iteration and adds its measures: the total swinging and
+     * effective traction, the total distance the nodes moved, the number of
+     * nodes, and the energy or NaN if it is not estimated.
+     */
+    public void update(double totalSwinging, double totalEffectiveTraction, double totalDisplacement, int nodeCount, double iterationEnergy) {
+        iterations++;
+        double iterationRatio = (totalEffectiveTraction > 0) ? (totalSwinging / totalEffectiveTraction) : (0);
+        double meanDisplacement = (nodeCount > 0) ? (totalDisplacement / nodeCount) : (0);
+        if (windowIterations == 0) {
+            ratio = iterationRatio;
+            displacement = meanDisplacement;
+        } else {
+            ratio += SMOOTHING * (iterationRatio - ratio);
+            displacement += SMOOTHING * (meanDisplacement - displacement);
+        }
+        peakDisplacement = Math.max(peakDisplacement, displacement);
+
+        if (Double.isNaN(iterationEnergy)) {
+            if (energyIterations > 0) {
+                restartEnergy();
+            }
+        } else {
+            // The slot holds the energy of WINDOW iterations ago, once the
+            // ring has been filled since the energy became available
+            energy = (energyIterations == 0) ? (iterationEnergy) : (energy + SMOOTHING * (iterationEnergy - energy));
+            int slot = energyIterations % WINDOW;
+            double previous = energies[slot];
+            energies[slot] = energy;
+            energyIterations++;
+            if (energyIterations > WINDOW) {
+                double change = Math.abs(energy - previous);
+                peakEnergyChange = Math.max(peakEnergyChange, change);
+                energyChange = (peakEnergyChange > 0) ? (change / peakEnergyChange) : (0);
+            } else {
+                energyChange = Double.NaN;
+            }
+        }
+        windowIterations++;
+
+        if (windowIterations >= WINDOW && ratio <= ERRATIC_RATIO) {
+            boolean settled = (Double.isNaN(energy)) ? (displacement <= tolerance * peakDisplacement) : (energyChange <= tolerance * tolerance);
+            if (settled) {
+                stop = Stop.CONVERGED;
+            }
+        }
+        checkBudgets();
+    }
+
+    private void checkBudgets() {
+        if (stop != Stop.NONE) {
+            return;
+        }
+        if (maxIterations > 0 && iterations >= maxIterations) {
+            stop = Stop.ITERATIONS;
+        } else if (maxTime > 0 && System.nanoTime() - startTime >= maxTime * 1e9) {
+            stop = Stop.TIME;
+        }
+    }
+
+    /**
+     * Why the layout should stop, NONE if it should go on.
+     */
+    public Stop getStop() {
+        return stop;
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    /**
+     * Smoothed swinging to effective traction ratio.
+     */
+    public double getRatio() {
+        return ratio;
+    }
+
+    /**
+     * Smoothed mean distance moved by a node in an iteration.
+     */
+    public double getDisplacement() {
+        return displacement;
+    }
+
+    public double getPeakDisplacement() {
+        return peakDisplacement;
+    }
+
+    /**
+     * Smoothed energy, NaN if it is not estimated.
+     */
+    public double getEnergy() {
+        return energy;
+    }
+
+    /**
+     * Change of the smoothed energy over the last WINDOW iterations, relative
+     * to its largest such change, NaN if unknown.
+     */
+    public double getEnergyChange() {
+        return energyChange;
+    }
+}
@@ -0,0 +1,128 @@
+/*
+Copyright 2008-2011 Gephi
+Authors : Mathieu Jacomy <mathieu.jacomy@gmail.com>
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+ */
+package org.gephi.plugins.layout.forceAtlas2Custom;
+
+/**
+ * Swinging and effective traction of a range of nodes, the measures the
+ * speed of the layout is adjusted with. Nodes are summed by blocks of fixed
+ * size, so that the partial sums and their reduction do not depend on how
+ * blocks are split between threads.
+ */
+public class ConvergenceThread implements Runnable, RangeTask {
+
+    public static final int BLOCK_SIZE = 4096;
+    private ForceAtlas2Data data;
+    private int fromBlock;
+    private int toBlock;
+    private double[] swinging;
+    private double[] traction;
+
+    public ConvergenceThread() {
+    }
+
+    public ConvergenceThread(ForceAtlas2Data data, int fromBlock, int toBlock, double[] swinging, double[] traction) {
+        set(data, fromBlock, toBlock, swinging, traction);
+    }
+
+    /**
+     * Sets the data and the blocks of the next run.
+     */
+    public void set(ForceAtlas2Data data, int fromBlock, int toBlock, double[] swinging, double[] traction) {
+        this.data = data;
+        this.fromBlock = fromBlock;
+        this.toBlock = toBlock;
+        this.swinging = swinging;
+        this.traction = traction;
+    }
+
+    public static int getBlockCount(int nodeCount) {
+        return (nodeCount + BLOCK_SIZE - 1) / BLOCK_SIZE;
+    }
+
+    @Override
+    public void run() {
+        run(fromBlock, toBlock);
+    }
+
+    @Override
+    public void run(int fromBlock, int toBlock) {
+        double[] dx = data.dx;
+        double[] dy = data.dy;
+        double[] old_dx = data.old_dx;
+        double[] old_dy = data.old_dy;
+        double[] mass = data.mass;
+        boolean[] fixed = data.fixed;
+        for (int b = fromBlock; b < toBlock; b++) {
+            int to = Math.min(data.count, (b + 1) * BLOCK_SIZE);
+            double totalSwinging = 0d;
+            double totalEffectiveTraction = 0d;
+            for (int n = b * BLOCK_SIZE; n < to; n++) {
+                if (!fixed[n]) {
+                    double sx = old_dx[n] - dx[n];
+                    double sy = old_dy[n] - dy[n];
+                    double tx = old_dx[n] + dx[n];
+                    double ty = old_dy[n] + dy[n];
+                    totalSwinging += mass[n] * Math.sqrt(sx * sx + sy * sy);   // If the node has a burst change of direction, then it's not converging.
+                    totalEffectiveTraction += mass[n] * 0.5 * Math.sqrt(tx * tx + ty * ty);
+                }
+            }
+            swinging[b] = totalSwinging;
+            traction[b] = totalEffectiveTraction;
+        }
+    }
+
+    /**
+     * Sums the first count values pairwise, in an order that only depends on
+     * count. Overwrites the values.
+     */
+    public static double sum(double[] values, int count) {
+        if (count == 0) {
+            return 0;
+        }
+        for (int width = 1; width < count; width *= 2) {
+            for (int i = 0; i + width < count; i += 2 * width) {
+                values[i] += values[i + width];
+            }
+        }
+        return values[0];
+    }
+}
@@ -0,0 +1,139 @@
+/*
+Copyright 2008-2011 Gephi
+Authors : Mathieu Jacomy <mathieu.jacomy@gmail.com>
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+ */
+package org.gephi.plugins.layout.forceAtlas2Custom;
+
+/**
+ * Moves a range of nodes by their forces, at a speed lowered for the nodes
+ * that swing, and publishes their new positions. Nodes are moved by the blocks
+ * of {@link ConvergenceThread}, and the distance they moved is summed by
+ * block. With an active set, sleeping nodes stay in place and the moves of
+ * the others are recorded in it.
+ */
+public class DisplacementThread implements Runnable, RangeTask {
+
+    private ForceAtlas2Data data;
+    private int fromBlock;
+    private int toBlock;
+    private double speed;
+    private boolean adjustSizes;
+    private double[] displacement;
+    private ActiveSet active;
+
+    public DisplacementThread() {
+    }
+
+    public DisplacementThread(ForceAtlas2Data data, int fromBlock, int toBlock, double speed, boolean adjustSizes, double[] displacement, ActiveSet active) {
+        set(data, fromBlock, toBlock, speed, adjustSizes, displacement, active);
+    }
+
+    /**
+     * Sets the speed and the buffers of the next run.
+     */
+    public void set(ForceAtlas2Data data, int fromBlock, int toBlock, double speed, boolean adjustSizes, double[] displacement, ActiveSet active) {
+        this.data = data;
+        this.fromBlock = fromBlock;
+        this.toBlock = toBlock;
+        this.speed = speed;
+        this.adjustSizes = adjustSizes;
+        this.displacement = displacement;
+        this.active = active;
+    }
+
+    @Override
+    public void run() {
+        run(fromBlock, toBlock);
+    }
+
+    @Override
+    public void run(int fromBlock, int toBlock) {
+        for (int b = fromBlock; b < toBlock; b++) {
+            int from = b * ConvergenceThread.BLOCK_SIZE;
+            int to = Math.min(data.count, from + ConvergenceThread.BLOCK_SIZE);
+            displacement[b] = move(from, to);
+            data.publish(from, to);
+        }
+    }
+
+    private double move(int from, int to) {
+        double[] dx = data.dx;
+        double[] dy = data.dy;
+        double[] old_dx = data.old_dx;
+        double[] old_dy = data.old_dy;
+        double[] mass = data.mass;
+        float[] x = data.x;
+        float[] y = data.y;
+        double totalDisplacement = 0;
+        for (int n = from; n < to; n++) {
+            if (active != null && !active.isAwake(n)) {
+                continue;
+            }
+            if (data.fixed[n]) {
+                if (active != null) {
+                    active.setMoved(n, 0, 0);
+                }
+            } else {
+
+                // Adaptive auto-speed: the speed of each node is lowered
+                // when the node swings.
+                double swinging = mass[n] * Math.sqrt((old_dx[n] - dx[n]) * (old_dx[n] - dx[n]) + (old_dy[n] - dy[n]) * (old_dy[n] - dy[n]));
+                double factor;
+                if (adjustSizes) {
+                    // If nodes overlap prevention is active, it's not possible to trust the swinging mesure.
+                    factor = 0.1 * speed / (1f + Math.sqrt(speed * swinging));
+
+                    double df = Math.sqrt(dx[n] * dx[n] + dy[n] * dy[n]);
+                    factor = Math.min(factor * df, 10.) / df;
+                } else {
+                    factor = speed / (1f + Math.sqrt(speed * swinging));
+                }
+
+                x[n] = (float) (x[n] + dx[n] * factor);
+                y[n] = (float) (y[n] + dy[n] * factor);
+                totalDisplacement += factor * Math.sqrt(dx[n] * dx[n] + dy[n] * dy[n]);
+                if (active != null) {
+                    active.setMoved(n, dx[n] * factor, dy[n] * factor);
+                }
+            }
+        }
+        return totalDisplacement;
+    }
+}
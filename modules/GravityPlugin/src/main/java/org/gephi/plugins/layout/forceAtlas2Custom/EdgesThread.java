@@ -0,0 +1,138 @@
+/*
+Copyright 2008-2011 Gephi
+Authors : Mathieu Jacomy <mathieu.jacomy@gmail.com>
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+ */
+package org.gephi.plugins.layout.forceAtlas2Custom;
+
+import org.gephi.plugins.layout.forceAtlas2Custom.ForceFactory.AttractionForce;
+
+/**
+ * Attraction along the edges, split in taskCount ranges of about the same
+ * number of edges. Each task accumulates into its own buffer, cleared first,
+ * so that each thread can have its own; when first dx/dy arrays are given,
+ * the first task accumulates into them as they are and task t into buffer
+ * t - 1. Runs over task indices, the same instance serving all iterations.
+ * <p>
+ * With an active set, the edges between two sleeping nodes are skipped: the
+ * forces of sleeping nodes are not used.
+ */
+public class EdgesThread implements Runnable, RangeTask {
+
+    private ForceAtlas2Edges edges;
+    private AttractionForce Attraction;
+    private int taskCount;
+    private double[] firstDx;
+    private double[] firstDy;
+    private double[][] buffersDx;
+    private double[][] buffersDy;
+    private ActiveSet active;
+
+    public EdgesThread() {
+    }
+
+    public EdgesThread(ForceAtlas2Edges edges, AttractionForce Attraction, int taskCount, double[] firstDx, double[] firstDy, double[][] buffersDx, double[][] buffersDy, ActiveSet active) {
+        set(edges, Attraction, taskCount, firstDx, firstDy, buffersDx, buffersDy, active);
+    }
+
+    public void set(ForceAtlas2Edges edges, AttractionForce Attraction, int taskCount, double[] firstDx, double[] firstDy, double[][] buffersDx, double[][] buffersDy, ActiveSet active) {
+        this.edges = edges;
+        this.Attraction = Attraction;
+        this.taskCount = taskCount;
+        this.firstDx = firstDx;
+        this.firstDy = firstDy;
+        this.buffersDx = buffersDx;
+        this.buffersDy = buffersDy;
+        this.active = active;
+    }
+
+    @Override
+    public void run() {
+        run(0, taskCount);
+    }
+
+    @Override
+    public void run(int fromTask, int toTask) {
+        for (int t = fromTask; t < toTask; t++) {
+            int from = (int) ((long) edges.count * t / taskCount);
+            int to = (int) ((long) edges.count * (t + 1) / taskCount);
+            double[] dx;
+            double[] dy;
+            if (firstDx == null) {
+                dx = buffersDx[t];
+                dy = buffersDy[t];
+            } else if (t == 0) {
+                dx = firstDx;
+                dy = firstDy;
+            } else {
+                dx = buffersDx[t - 1];
+                dy = buffersDy[t - 1];
+            }
+            if (dx != firstDx) {
+                for (int n = 0; n < dx.length; n++) {
+                    dx[n] = 0;
+                    dy[n] = 0;
+                }
+            }
+            if (active == null) {
+                Attraction.apply(edges.source, edges.target, edges.weight, from, to, dx, dy);
+            } else {
+                applyAwake(from, to, dx, dy);
+            }
+        }
+    }
+
+    /*
+     * Attraction by runs of edges with an awake end
+     */
+    private void applyAwake(int from, int to, double[] dx, double[] dy) {
+        int runFrom = from;
+        for (int e = from; e < to; e++) {
+            if (!active.isAwake(edges.source[e]) && !active.isAwake(edges.target[e])) {
+                if (runFrom < e) {
+                    Attraction.apply(edges.source, edges.target, edges.weight, runFrom, e, dx, dy);
+                }
+                runFrom = e + 1;
+            }
+        }
+        if (runFrom < to) {
+            Attraction.apply(edges.source, edges.target, edges.weight, runFrom, to, dx, dy);
+        }
+    }
+}
@@ -0,0 +1,570 @@
+/*
+Copyright 2008-2011 Gephi
+Authors : Mathieu Jacomy <mathieu.jacomy@gmail.com>
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+ */
+package org.gephi.plugins.layout.forceAtlas2Custom;
+
+import java.util.Arrays;
+import org.gephi.plugins.layout.forceAtlas2Custom.ForceFactory.RepulsionForce;
+
+/**
+ * Fast Multipole Method for the linear repulsion. In 2D the repulsion of a
+ * node m on n, mass[m] * (z[n] - z[m]) / |z[n] - z[m]|^2, is the conjugate of
+ * mass[m] / (z[n] - z[m]) with positions as complex numbers z, the derivative
+ * of the potential mass[m] * log(z - z[m]). Cells of a square quadtree carry
+ * multipole expansions of this potential up to a configurable order, built
+ * bottom-up (P2M, M2M). A dual tree traversal pairs well separated cells,
+ * which exchange their multipole expansions into local expansions (M2L), and
+ * lists the neighbour leaves. Local expansions are then shifted down to the
+ * leaves (L2L). The whole update is O(n) for a given order.
+ * <p>
+ * Querying a node evaluates the local expansion of its leaf (L2P) and applies
+ * the exact repulsion of the nodes in the neighbour leaves, on the queried
+ * node only. Each pair is thus counted once, as in the exact computation,
+ * and the queries do not write the forces of other nodes. The theta of the
+ * Barnes Hut optimization is not used: the error is set by the order, about
+ * SEPARATION^order.
+ */
+public class FastMultipole extends ApproximateRepulsion {
+
+    private static final int LEAF_CAPACITY = 16;
+    private static final int MAX_DEPTH = 32;
+    // Cells are well separated when the sum of their radii is below this fraction of the distance between their centers
+    private static final double SEPARATION = 0.5;
+    // Below this number of target cells per task, the M2L work is not split further
+    private static final int MIN_TASK_CELLS = 256;
+    private ForceAtlas2 layout;
+    private int expansionOrder = 6;
+    private int terms;
+    private double[][] binomial = new double[0][];
+    // Nodes sorted by cell, a cell holds the range [start, end)
+    private int[] nodes = new int[0];
+    private int[] scratch = new int[0];
+    private int[] leafOf = new int[0];
+    private int cellCount;
+    private int[] start = new int[0];
+    private int[] end = new int[0];
+    private int[] depth = new int[0];
+    // First child, children are consecutive, -1 for a leaf
+    private int[] firstChild = new int[0];
+    private int[] childCount = new int[0];
+    private double[] centerX = new double[0];
+    private double[] centerY = new double[0];
+    private double[] halfSize = new double[0];
+    // Largest distance from the center to a node of the cell
+    private double[] radius = new double[0];
+    // Expansions, terms coefficients per cell
+    private double[] multipoleRe = new double[0];
+    private double[] multipoleIm = new double[0];
+    private double[] localRe = new double[0];
+    private double[] localIm = new double[0];
+    // Interaction lists, by target cell
+    private int[] farOffsets = new int[0];
+    private int[] far = new int[0];
+    private int[] nearOffsets = new int[0];
+    private int[] near = new int[0];
+    // Pairs found by the traversal
+    private int[] pairs = new int[0];
+    private int pairCount;
+    private int[] stack = new int[0];
+    // M2L tasks over ranges of target cells, each with its scratch arrays
+    private int localsTaskCount;
+    private double[][] inverseRe = new double[0][];
+    private double[][] inverseIm = new double[0][];
+    private final RangeTask localsTask = new RangeTask() {
+        @Override
+        public void run(int fromTask, int toTask) {
+            for (int t = fromTask; t < toTask; t++) {
+                int from = (int) ((long) cellCount * t / localsTaskCount);
+                int to = (int) ((long) cellCount * (t + 1) / localsTaskCount);
+                for (int c = from; c < to; c++) {
+                    for (int i = farOffsets[c]; i < farOffsets[c + 1]; i++) {
+                        multipoleToLocal(far[i], c, inverseRe[t], inverseIm[t]);
+                    }
+                }
+            }
+        }
+    };
+
+    public FastMultipole(ForceAtlas2Data data) {
+        super(data);
+    }
+
+    @Override
+    public Backend getBackend() {
+        return Backend.FAST_MULTIPOLE;
+    }
+
+    @Override
+    public boolean isSymmetric() {
+        return false;
+    }
+
+    @Override
+    public boolean isThetaUsed() {
+        return false;
+    }
+
+    @Override
+    public void configure(ForceAtlas2 layout) {
+        this.layout = layout;
+        expansionOrder = layout.getFmmOrder();
+    }
+
+    @Override
+    public void update() {
+        if (terms != expansionOrder + 1) {
+            terms = expansionOrder + 1;
+            computeBinomials();
+        }
+        buildTree();
+        if (cellCount == 0) {
+            return;
+        }
+        computeRadii();
+        computeMultipoles();
+        traverse();
+        computeLocals();
+    }
+
+    private void computeBinomials() {
+        binomial = new double[2 * terms][];
+        for (int i = 0; i < binomial.length; i++) {
+            binomial[i] = new double[i + 1];
+            binomial[i][0] = 1;
+            binomial[i][i] = 1;
+            for (int j = 1; j < i; j++) {
+                binomial[i][j] = binomial[i - 1][j - 1] + binomial[i - 1][j];
+            }
+        }
+    }
+
+    private void buildTree() {
+        int n = data.count;
+        if (nodes.length != n) {
+            nodes = new int[n];
+            scratch = new int[n];
+            leafOf = new int[n];
+        }
+        cellCount = 0;
+        if (n == 0) {
+            return;
+        }
+        float[] x = data.x;
+        float[] y = data.y;
+        double minX = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < n; i++) {
+            nodes[i] = i;
+            minX = Math.min(minX, x[i]);
+            maxX = Math.max(maxX, x[i]);
+            minY = Math.min(minY, y[i]);
+            maxY = Math.max(maxY, y[i]);
+        }
+        obtainCell(0, n, 0, (minX + maxX) / 2, (minY + maxY) / 2, 0.5 * Math.max(maxX - minX, maxY - minY) + 1);
+
+        // Cells are split in creation order, so children are always after their parent
+        int[] counts = new int[4];
+        int[] cursors = new int[4];
+        for (int c = 0; c < cellCount; c++) {
+            if (end[c] - start[c] <= LEAF_CAPACITY || depth[c] >= MAX_DEPTH) {
+                for (int i = start[c]; i < end[c]; i++) {
+                    leafOf[nodes[i]] = c;
+                }
+                continue;
+            }
+            Arrays.fill(counts, 0);
+            for (int i = start[c]; i < end[c]; i++) {
+                counts[quadrant(c, nodes[i])]++;
+            }
+            int offset = start[c];
+            for (int q = 0; q < 4; q++) {
+                cursors[q] = offset;
+                offset += counts[q];
+            }
+            for (int i = start[c]; i < end[c]; i++) {
+                int node = nodes[i];
+                scratch[cursors[quadrant(c, node)]++] = node;
+            }
+            System.arraycopy(scratch, start[c], nodes, start[c], end[c] - start[c]);
+
+            double half = halfSize[c] / 2;
+            firstChild[c] = cellCount;
+            int from = start[c];
+            for (int q = 0; q < 4; q++) {
+                if (counts[q] > 0) {
+                    double childX = ((q & 1) == 0) ? (centerX[c] - half) : (centerX[c] + half);
+                    double childY = ((q & 2) == 0) ? (centerY[c] - half) : (centerY[c] + half);
+                    obtainCell(from, from + counts[q], depth[c] + 1, childX, childY, half);
+                    from += counts[q];
+                }
+            }
+            childCount[c] = cellCount - firstChild[c];
+        }
+    }
+
+    private int quadrant(int cell, int node) {
+        int q = (data.x[node] < centerX[cell]) ? (0) : (1);
+        return (data.y[node] < centerY[cell]) ? (q) : (q | 2);
+    }
+
+    private void obtainCell(int from, int to, int cellDepth, double x, double y, double half) {
+        if (cellCount == start.length) {
+            int capacity = Math.max(64, 2 * cellCount);
+            start = Arrays.copyOf(start, capacity);
+            end = Arrays.copyOf(end, capacity);
+            depth = Arrays.copyOf(depth, capacity);
+            firstChild = Arrays.copyOf(firstChild, capacity);
+            childCount = Arrays.copyOf(childCount, capacity);
+            centerX = Arrays.copyOf(centerX, capacity);
+            centerY = Arrays.copyOf(centerY, capacity);
+            halfSize = Arrays.copyOf(halfSize, capacity);
+            radius = Arrays.copyOf(radius, capacity);
+        }
+        int c = cellCount++;
+        start[c] = from;
+        end[c] = to;
+        depth[c] = cellDepth;
+        firstChild[c] = -1;
+        childCount[c] = 0;
+        centerX[c] = x;
+        centerY[c] = y;
+        halfSize[c] = half;
+    }
+
+    private void computeRadii() {
+        for (int c = cellCount - 1; c >= 0; c--) {
+            double r = 0;
+            if (firstChild[c] < 0) {
+                for (int i = start[c]; i < end[c]; i++) {
+                    int node = nodes[i];
+                    double xDist = data.x[node] - centerX[c];
+                    double yDist = data.y[node] - centerY[c];
+                    r = Math.max(r, Math.sqrt(xDist * xDist + yDist * yDist));
+                }
+            } else {
+                for (int child = firstChild[c]; child < firstChild[c] + childCount[c]; child++) {
+                    double xDist = centerX[child] - centerX[c];
+                    double yDist = centerY[child] - centerY[c];
+                    r = Math.max(r, Math.sqrt(xDist * xDist + yDist * yDist) + radius[child]);
+                }
+            }
+            radius[c] = r;
+        }
+    }
+
+    // P2M on the leaves and M2M towards the root
+    private void computeMultipoles() {
+        int size = cellCount * terms;
+        if (multipoleRe.length < size) {
+            multipoleRe = new double[size];
+            multipoleIm = new double[size];
+            localRe = new double[size];
+            localIm = new double[size];
+        }
+        Arrays.fill(multipoleRe, 0, size, 0);
+        Arrays.fill(multipoleIm, 0, size, 0);
+        double[] powRe = new double[terms];
+        double[] powIm = new double[terms];
+        for (int c = cellCount - 1; c >= 0; c--) {
+            int base = c * terms;
+            if (firstChild[c] < 0) {
+                for (int i = start[c]; i < end[c]; i++) {
+                    int node = nodes[i];
+                    double q = data.mass[node];
+                    double zRe = data.x[node] - centerX[c];
+                    double zIm = data.y[node] - centerY[c];
+                    multipoleRe[base] += q;
+                    // a_k = -sum(q * z^k / k)
+                    double pRe = zRe;
+                    double pIm = zIm;
+                    for (int k = 1; k < terms; k++) {
+                        multipoleRe[base + k] -= q * pRe / k;
+                        multipoleIm[base + k] -= q * pIm / k;
+                        double nextRe = pRe * zRe - pIm * zIm;
+                        pIm = pRe * zIm + pIm * zRe;
+                        pRe = nextRe;
+                    }
+                }
+            } else {
+                for (int child = firstChild[c]; child < firstChild[c] + childCount[c]; child++) {
+                    int childBase = child * terms;
+                    powers(centerX[child] - centerX[c], centerY[child] - centerY[c], powRe, powIm);
+                    double a0 = multipoleRe[childBase];
+                    multipoleRe[base] += a0;
+                    // b_l = -a_0 * z^l / l + sum(a_k * z^(l-k) * C(l-1, k-1)), k = 1..l
+                    for (int l = 1; l < terms; l++) {
+                        double re = -a0 * powRe[l] / l;
+                        double im = -a0 * powIm[l] / l;
+                        for (int k = 1; k <= l; k++) {
+                            double aRe = multipoleRe[childBase + k];
+                            double aIm = multipoleIm[childBase + k];
+                            double b = binomial[l - 1][k - 1];
+                            re += b * (aRe * powRe[l - k] - aIm * powIm[l - k]);
+                            im += b * (aRe * powIm[l - k] + aIm * powRe[l - k]);
+                        }
+                        multipoleRe[base + l] += re;
+                        multipoleIm[base + l] += im;
+                    }
+                }
+            }
+        }
+    }
+
+    private static void powers(double zRe, double zIm, double[] powRe, double[] powIm) {
+        powRe[0] = 1;
+        powIm[0] = 0;
+        for (int k = 1; k < powRe.length; k++) {
+            powRe[k] = powRe[k - 1] * zRe - powIm[k - 1] * zIm;
+            powIm[k] = powRe[k - 1] * zIm + powIm[k - 1] * zRe;
+        }
+    }
+
+    // Dual tree traversal, fills the far and near interaction lists
+    private void traverse() {
+        pairCount = 0;
+        int top = 0;
+        top = push(top, 0, 0);
+        while (top > 0) {
+            top -= 2;
+            int a = stack[top];
+            int b = stack[top + 1];
+            if (a == b) {
+                if (firstChild[a] < 0) {
+                    addPair(a, a);
+                } else {
+                    int last = firstChild[a] + childCount[a];
+                    for (int i = firstChild[a]; i < last; i++) {
+                        for (int j = i; j < last; j++) {
+                            top = push(top, i, j);
+                        }
+                    }
+                }
+                continue;
+            }
+            double xDist = centerX[a] - centerX[b];
+            double yDist = centerY[a] - centerY[b];
+            double distance = Math.sqrt(xDist * xDist + yDist * yDist);
+            if (radius[a] + radius[b] < SEPARATION * distance) {
+                // Far pairs are stored with a negative source
+                addPair(a, -1 - b);
+                addPair(b, -1 - a);
+            } else if (firstChild[a] < 0 && firstChild[b] < 0) {
+                addPair(a, b);
+                addPair(b, a);
+            } else if (firstChild[b] < 0 || (firstChild[a] >= 0 && radius[a] >= radius[b])) {
+                for (int child = firstChild[a]; child < firstChild[a] + childCount[a]; child++) {
+                    top = push(top, child, b);
+                }
+            } else {
+                for (int child = firstChild[b]; child < firstChild[b] + childCount[b]; child++) {
+                    top = push(top, a, child);
+                }
+            }
+        }
+
+        // Group the pairs by target cell
+        if (farOffsets.length < cellCount + 1) {
+            farOffsets = new int[cellCount + 1];
+            nearOffsets = new int[cellCount + 1];
+        }
+        Arrays.fill(farOffsets, 0, cellCount + 1, 0);
+        Arrays.fill(nearOffsets, 0, cellCount + 1, 0);
+        int farCount = 0;
+        for (int p = 0; p < pairCount; p++) {
+            if (pairs[2 * p + 1] < 0) {
+                farOffsets[pairs[2 * p] + 1]++;
+                farCount++;
+            } else {
+                nearOffsets[pairs[2 * p] + 1]++;
+            }
+        }
+        for (int c = 0; c < cellCount; c++) {
+            farOffsets[c + 1] += farOffsets[c];
+            nearOffsets[c + 1] += nearOffsets[c];
+        }
+        if (far.length < farCount) {
+            far = new int[farCount];
+        }
+        if (near.length < pairCount - farCount) {
+            near = new int[pairCount - farCount];
+        }
+        for (int p = 0; p < pairCount; p++) {
+            int target = pairs[2 * p];
+            int source = pairs[2 * p + 1];
+            if (source < 0) {
+                far[farOffsets[target]++] = -1 - source;
+            } else {
+                near[nearOffsets[target]++] = source;
+            }
+        }
+        // The offsets were moved to the end of each list
+        for (int c = cellCount; c > 0; c--) {
+            farOffsets[c] = farOffsets[c - 1];
+            nearOffsets[c] = nearOffsets[c - 1];
+        }
+        farOffsets[0] = 0;
+        nearOffsets[0] = 0;
+    }
+
+    private int push(int top, int a, int b) {
+        if (top + 2 > stack.length) {
+            stack = Arrays.copyOf(stack, Math.max(64, 2 * stack.length));
+        }
+        stack[top] = a;
+        stack[top + 1] = b;
+        return top + 2;
+    }
+
+    private void addPair(int target, int source) {
+        if (2 * pairCount + 2 > pairs.length) {
+            pairs = Arrays.copyOf(pairs, Math.max(256, 2 * pairs.length));
+        }
+        pairs[2 * pairCount] = target;
+        pairs[2 * pairCount + 1] = source;
+        pairCount++;
+    }
+
+    // M2L in parallel by target cells, then L2L towards the leaves
+    private void computeLocals() {
+        final int size = cellCount * terms;
+        Arrays.fill(localRe, 0, size, 0);
+        Arrays.fill(localIm, 0, size, 0);
+
+        int taskCount = Math.max(1, Math.min(layout.getTaskCount(), cellCount / MIN_TASK_CELLS));
+        if (inverseRe.length < taskCount || (taskCount > 0 && inverseRe[0].length != 2 * terms)) {
+            inverseRe = new double[taskCount][2 * terms];
+            inverseIm = new double[taskCount][2 * terms];
+        }
+        localsTaskCount = taskCount;
+        layout.runRange(localsTask, taskCount, taskCount);
+
+        double[] powRe = new double[terms];
+        double[] powIm = new double[terms];
+        for (int c = 0; c < cellCount; c++) {
+            if (firstChild[c] < 0) {
+                continue;
+            }
+            int base = c * terms;
+            for (int child = firstChild[c]; child < firstChild[c] + childCount[c]; child++) {
+                int childBase = child * terms;
+                powers(centerX[child] - centerX[c], centerY[child] - centerY[c], powRe, powIm);
+                // c_k = sum(b_l * C(l, k) * z^(l-k)), l = k..p
+                for (int k = 1; k < terms; k++) {
+                    double re = 0;
+                    double im = 0;
+                    for (int l = k; l < terms; l++) {
+                        double bRe = localRe[base + l];
+                        double bIm = localIm[base + l];
+                        double b = binomial[l][k];
+                        re += b * (bRe * powRe[l - k] - bIm * powIm[l - k]);
+                        im += b * (bRe * powIm[l - k] + bIm * powRe[l - k]);
+                    }
+                    localRe[childBase + k] += re;
+                    localIm[childBase + k] += im;
+                }
+            }
+        }
+    }
+
+    private void multipoleToLocal(int source, int target, double[] invRe, double[] invIm) {
+        int sourceBase = source * terms;
+        int targetBase = target * terms;
+        // Powers of 1 / z, z the source center relative to the target center
+        double zRe = centerX[source] - centerX[target];
+        double zIm = centerY[source] - centerY[target];
+        double norm = zRe * zRe + zIm * zIm;
+        double iRe = zRe / norm;
+        double iIm = -zIm / norm;
+        invRe[0] = 1;
+        invIm[0] = 0;
+        for (int k = 1; k < invRe.length; k++) {
+            invRe[k] = invRe[k - 1] * iRe - invIm[k - 1] * iIm;
+            invIm[k] = invRe[k - 1] * iIm + invIm[k - 1] * iRe;
+        }
+        // b_l = -a_0 / (l * z^l) + sum((-1)^k * C(l+k-1, k-1) * a_k / z^(l+k)), k = 1..p
+        double a0 = multipoleRe[sourceBase];
+        for (int l = 1; l < terms; l++) {
+            double re = -a0 * invRe[l] / l;
+            double im = -a0 * invIm[l] / l;
+            for (int k = 1; k < terms; k++) {
+                double aRe = multipoleRe[sourceBase + k];
+                double aIm = multipoleIm[sourceBase + k];
+                double b = ((k & 1) == 0) ? (binomial[l + k - 1][k - 1]) : (-binomial[l + k - 1][k - 1]);
+                re += b * (aRe * invRe[l + k] - aIm * invIm[l + k]);
+                im += b * (aRe * invIm[l + k] + aIm * invRe[l + k]);
+            }
+            localRe[targetBase + l] += re;
+            localIm[targetBase + l] += im;
+        }
+    }
+
+    @Override
+    public int applyForce(int n, RepulsionForce Force, double theta, double[] dx, double[] dy) {
+        if (cellCount == 0) {
+            return 0;
+        }
+        int leaf = leafOf[n];
+        int base = leaf * terms;
+
+        // L2P: derivative of the local expansion, by Horner's method
+        double zRe = data.x[n] - centerX[leaf];
+        double zIm = data.y[n] - centerY[leaf];
+        double re = (terms - 1) * localRe[base + terms - 1];
+        double im = (terms - 1) * localIm[base + terms - 1];
+        for (int l = terms - 2; l >= 1; l--) {
+            double nextRe = re * zRe - im * zIm + l * localRe[base + l];
+            im = re * zIm + im * zRe + l * localIm[base + l];
+            re = nextRe;
+        }
+        // The field is the conjugate of the derivative
+        Force.applyField(n, re, -im, dx, dy);
+        int cost = terms;
+
+        for (int i = nearOffsets[leaf]; i < nearOffsets[leaf + 1]; i++) {
+            int source = near[i];
+            Force.apply(n, nodes, start[source], end[source], 1.0, dx, dy);
+            cost += end[source] - start[source];
+        }
+        return cost;
+    }
+}
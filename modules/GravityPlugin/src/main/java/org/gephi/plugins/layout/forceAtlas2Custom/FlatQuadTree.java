@@ -0,0 +1,259 @@
+/*
+Copyright 2008-2011 Gephi
+Authors : Mathieu Jacomy <mathieu.jacomy@gmail.com>
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+ */
+package org.gephi.plugins.layout.forceAtlas2Custom;
+
+import java.util.Arrays;
+import org.gephi.plugins.layout.forceAtlas2Custom.ForceFactory.RepulsionForce;
+
+/**
+ * Barnes Hut optimization on a quadtree stored in flat arrays. The cells are
+ * the same as the Region ones (split at the mass center, same order of
+ * subregions), but the node indices are stored once in a permuted array where
+ * each cell is a contiguous range, and the cells live in primitive arrays
+ * reused across iterations. Cells deeper than MAX_DEPTH, or whose nodes all
+ * share the same position, are leaves holding several nodes.
+ */
+public class FlatQuadTree extends ApproximateRepulsion {
+
+    protected static final int MAX_DEPTH = 48;
+    // Nodes, permuted so that each cell is a contiguous range
+    protected int[] order = new int[0];
+    protected int[] scratch = new int[0];
+    private final int[] quadrantCount = new int[4];
+    private final int[] quadrantCursor = new int[4];
+    // Cells, in breadth first order: children of a cell are contiguous
+    protected int cellCount;
+    protected int[] start = new int[0];
+    protected int[] end = new int[0];
+    protected int[] depth = new int[0];
+    protected int[] firstChild = new int[0];
+    protected int[] childCount = new int[0];
+    protected double[] mass = new double[0];
+    protected double[] massCenterX = new double[0];
+    protected double[] massCenterY = new double[0];
+    protected double[] size = new double[0];
+    // Traversal stacks, one per thread
+    private final ThreadLocal<int[]> stacks = new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+            return new int[4 * MAX_DEPTH + 4];
+        }
+    };
+
+    public FlatQuadTree(ForceAtlas2Data data) {
+        super(data);
+    }
+
+    @Override
+    public Backend getBackend() {
+        return Backend.FLAT_QUADTREE;
+    }
+
+    @Override
+    public void update() {
+        int n = data.count;
+        if (order.length != n) {
+            order = new int[n];
+            scratch = new int[n];
+        }
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        cellCount = 0;
+        if (n == 0) {
+            return;
+        }
+        newCell(0, n, 0);
+        for (int c = 0; c < cellCount; c++) {
+            if (end[c] - start[c] > 1) {
+                updateMassAndGeometry(c);
+                if (depth[c] < MAX_DEPTH) {
+                    buildSubCells(c);
+                }
+            }
+        }
+    }
+
+    protected int newCell(int from, int to, int cellDepth) {
+        if (cellCount == start.length) {
+            ensureCellCapacity(Math.max(16, 2 * cellCount));
+        }
+        int c = cellCount++;
+        start[c] = from;
+        end[c] = to;
+        depth[c] = cellDepth;
+        firstChild[c] = -1;
+        childCount[c] = 0;
+        mass[c] = 0;
+        return c;
+    }
+
+    /**
+     * Grows the cell arrays to hold at least the given number of cells.
+     */
+    protected void ensureCellCapacity(int capacity) {
+        if (capacity <= start.length) {
+            return;
+        }
+        start = Arrays.copyOf(start, capacity);
+        end = Arrays.copyOf(end, capacity);
+        depth = Arrays.copyOf(depth, capacity);
+        firstChild = Arrays.copyOf(firstChild, capacity);
+        childCount = Arrays.copyOf(childCount, capacity);
+        mass = Arrays.copyOf(mass, capacity);
+        massCenterX = Arrays.copyOf(massCenterX, capacity);
+        massCenterY = Arrays.copyOf(massCenterY, capacity);
+        size = Arrays.copyOf(size, capacity);
+    }
+
+    /*
+     * Same computation as Region.updateMassAndGeometry
+     */
+    private void updateMassAndGeometry(int c) {
+        double cellMass = 0;
+        double massSumX = 0;
+        double massSumY = 0;
+        for (int i = start[c]; i < end[c]; i++) {
+            int n = order[i];
+            cellMass += data.mass[n];
+            massSumX += data.x[n] * data.mass[n];
+            massSumY += data.y[n] * data.mass[n];
+        }
+        double centerX = massSumX / cellMass;
+        double centerY = massSumY / cellMass;
+
+        double cellSize = Double.MIN_VALUE;
+        for (int i = start[c]; i < end[c]; i++) {
+            int n = order[i];
+            double distance = Math.sqrt((data.x[n] - centerX) * (data.x[n] - centerX) + (data.y[n] - centerY) * (data.y[n] - centerY));
+            cellSize = Math.max(cellSize, 2 * distance);
+        }
+        mass[c] = cellMass;
+        massCenterX[c] = centerX;
+        massCenterY[c] = centerY;
+        size[c] = cellSize;
+    }
+
+    /*
+     * Same partition as Region.buildSubRegions, stable so that each range keeps
+     * the order of the nodes.
+     */
+    private void buildSubCells(int c) {
+        int from = start[c];
+        int to = end[c];
+        int count = to - from;
+        Arrays.fill(quadrantCount, 0);
+        for (int i = from; i < to; i++) {
+            quadrantCount[quadrant(order[i], c)]++;
+        }
+        for (int q = 0; q < 4; q++) {
+            if (quadrantCount[q] == count) {
+                // All the nodes at the same position: the cell stays a leaf
+                return;
+            }
+        }
+
+        int offset = from;
+        for (int q = 0; q < 4; q++) {
+            quadrantCursor[q] = offset;
+            offset += quadrantCount[q];
+        }
+        for (int i = from; i < to; i++) {
+            int n = order[i];
+            scratch[quadrantCursor[quadrant(n, c)]++] = n;
+        }
+        System.arraycopy(scratch, from, order, from, count);
+
+        firstChild[c] = cellCount;
+        offset = from;
+        for (int q = 0; q < 4; q++) {
+            if (quadrantCount[q] > 0) {
+                newCell(offset, offset + quadrantCount[q], depth[c] + 1);
+                childCount[c]++;
+                offset += quadrantCount[q];
+            }
+        }
+    }
+
+    private int quadrant(int n, int c) {
+        if (data.x[n] < massCenterX[c]) {
+            return (data.y[n] < massCenterY[c]) ? (0) : (1);
+        } else {
+            return (data.y[n] < massCenterY[c]) ? (3) : (2);
+        }
+    }
+
+    @Override
+    public int applyForce(int n, RepulsionForce Force, double theta, double[] dx, double[] dy) {
+        if (cellCount == 0) {
+            return 0;
+        }
+        int[] stack = stacks.get();
+        int top = 0;
+        int cost = 0;
+        stack[top++] = 0;
+        while (top > 0) {
+            int c = stack[--top];
+            if (end[c] - start[c] < 2) {
+                Force.apply(n, order[start[c]], dx, dy);
+                cost++;
+                continue;
+            }
+            double xDist = data.x[n] - massCenterX[c];
+            double yDist = data.y[n] - massCenterY[c];
+            double distance = Math.sqrt(xDist * xDist + yDist * yDist);
+            if (distance * theta > size[c]) {
+                Force.apply(n, massCenterX[c], massCenterY[c], mass[c], dx, dy);
+                cost++;
+            } else if (firstChild[c] < 0) {
+                Force.apply(n, order, start[c], end[c], dx, dy);
+                cost += end[c] - start[c];
+            } else {
+                // Reverse order, so that the subcells are visited in order
+                for (int k = childCount[c] - 1; k >= 0; k--) {
+                    stack[top++] = firstChild[c] + k;
+                }
+            }
+        }
+        return cost;
+    }
+}
@@ -48,21 +48,23 @@
 package org.gephi.plugins.layout.forceAtlas2Custom;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.Future;
 import org.gephi.graph.api.Edge;
 import org.gephi.graph.api.Graph;
+import org.gephi.graph.api.GraphDiff;
 import org.gephi.graph.api.GraphModel;
+import org.gephi.graph.api.GraphObserver;
 import org.gephi.graph.api.Node;
 import org.gephi.plugins.layout.forceAtlas2Custom.ForceFactory.AttractionForce;
 import org.gephi.plugins.layout.forceAtlas2Custom.ForceFactory.RepulsionForce;
 import org.gephi.layout.spi.Layout;
 import org.gephi.layout.spi.LayoutBuilder;
 import org.gephi.layout.spi.LayoutProperty;
-import java.io.*;
 import org.openide.util.Exceptions;
 import org.openide.util.NbBundle;
 
@@ -87,26 +89,91 @@ public class ForceAtlas2 implements Layout {
     private boolean adjustSizes;
     private boolean barnesHutOptimize;
     private double barnesHutTheta;
+    private boolean adaptiveTheta;
+    private double adaptiveThetaError;
+    private final AdaptiveTheta thetaControl = new AdaptiveTheta();
+    private double currentTheta;
     private boolean linLogMode;
     private boolean strongGravityMode;
     private int threadCount;
     private int currentThreadCount;
-    private Region rootRegion;
+    private ForceAtlas2Data data;
+    private ForceAtlas2Edges edgeData;
+    private GraphObserver graphObserver;
+    private double totalMass;
+    private ApproximateRepulsion approximation;
+    private ApproximateRepulsion.Backend approximationBackend;
+    private double barnesHutRebuildThreshold;
+    private int fmmOrder;
+    private boolean fusedKernel;
+    private boolean activeSet;
+    private double sleepTolerance;
+    private int sleepIterations;
+    private int wakeInterval;
+    private ActiveSet activeNodes;
+    private NodeOrdering.Curve nodeOrdering;
+    private int nodeOrderingInterval;
+    private int iterationsSinceOrdering;
+    private boolean multilevel;
+    private Multilevel.Coarsening multilevelCoarsening;
+    private int multilevelIterations;
+    private int multilevelTargetSize;
+    // Levels left to lay out before the graph itself, null once done
+    private Multilevel hierarchy;
+    private boolean multilevelDone;
     double outboundAttCompensation = 1;
-    private ExecutorService pool;
+    private ForkJoinPool pool;
+    private PhaseWorkers workers;
+    private boolean persistentWorkers;
+    private boolean deterministic;
+    // In deterministic mode, the number of force buffers, whatever the number of threads
+    private static final int DETERMINISTIC_BUFFERS = 8;
+    private int[] rangeBounds = new int[0];
+    // Repulsion cost of each node at the previous iteration
+    private int[] nodeCosts = new int[0];
+    private long[] cumulativeCosts = new long[0];
+    private int nodeCostsVersion = -1;
+    private ForceAtlas2Data nodeCostsData;
+    private static final int MIN_EDGES_PER_THREAD = 10000;
+    // Graph changes up to this fraction of the graph size are patched in the snapshot
+    private static final double MAX_PATCH_RATIO = 0.05;
+    // Per-thread force buffers, shared by the attraction and the exact repulsion
+    private double[][] attractionDx = new double[0][];
+    private double[][] attractionDy = new double[0][];
+    private double[] swingingBlocks = new double[0];
+    private double[] tractionBlocks = new double[0];
     private static final double MAX_GRAVITY = 100;
     private double gravityXRatio;
     private double gravityYRatio;
-    private List<Double> swingingHistory = new ArrayList();
-    private List<Double> tractionHistory = new ArrayList();
-    private boolean performanceMonitor = true;
-    private List<Long> nanoStepTimes = new ArrayList<Long>();
+    private double[] displacementBlocks = new double[0];
+    // Tasks of the phases, set again at each iteration
+    private final FusedNodesThread fusedNodesThread = new FusedNodesThread();
+    private final NodesThread nodesThread = new NodesThread();
+    private final ConvergenceThread convergenceThread = new ConvergenceThread();
+    private final DisplacementThread displacementThread = new DisplacementThread();
+    private final EdgesThread edgesThread = new EdgesThread();
+    private final TilesThread tilesThread = new TilesThread();
+    private final BuffersThread buffersThread = new BuffersThread();
+    // Chunks of a range task run on the pool, and their futures
+    private RangeChunk[] rangeChunks = new RangeChunk[0];
+    private final ArrayList<Future> rangeFutures = new ArrayList<Future>();
+    private boolean autoStop;
+    private double autoStopTolerance;
+    private boolean autoStopEnergy;
+    private int maxIterations;
+    private double maxTime;
+    private final ConvergenceMonitor convergence = new ConvergenceMonitor();
+    private LayoutEnergy energy;
+    private final LayoutMetrics metrics = new LayoutMetrics();
+    private final LayoutEvents events = LayoutEvents.get();
+    // JFR event of the current phase, null when not recorded
+    private Object phaseEvent;
 
 
 
     public ForceAtlas2(ForceAtlas2Builder layoutBuilder) {
         this.layoutBuilder = layoutBuilder;
-        this.threadCount = Math.min(4, Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+        this.threadCount = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
     }
 
     @Override
@@ -120,6 +187,138 @@ public class ForceAtlas2 implements Layout {
         Node[] nodes = graph.getNodes().toArray();
 
         // Initialise layout data
+        data = new ForceAtlas2Data();
+        data.load(nodes);
+        edgeData = new ForceAtlas2Edges();
+        approximation = null;
+        iterationsSinceOrdering = 0;
+        hierarchy = null;
+        multilevelDone = false;
+        loadNodeAttributes();
+        loadMasses();
+        destroyGraphObserver();
+        metrics.reset();
+        convergence.reset();
+        energy = null;
+        thetaControl.reset();
+        activeNodes = null;
+        if (persistentWorkers) {
+            workers = new PhaseWorkers(threadCount - 1);
+        } else {
+            pool = new ForkJoinPool(threadCount);
+        }
+        currentThreadCount = threadCount;
+    }
+
+    /**
+     * Brings the nodes, edges and masses up to date with the visible graph.
+     * They are only read again from the graph when the graph observer reports
+     * a change: small changes are patched in, the snapshot is reloaded
+     * otherwise.
+     */
+    private void updateSnapshot() {
+        if (graphObserver == null || graphObserver.isDestroyed() || graphObserver.getGraph() != graph) {
+            destroyGraphObserver();
+            graphObserver = graphModel.createGraphObserver(graph, true);
+            loadSnapshot();
+        } else if (graphObserver.hasGraphChanged()) {
+            GraphDiff diff = graphObserver.getDiff();
+            if (diff == null || !diff.getRemovedNodes().isEmpty()
+                    || diff.getAddedNodes().size() + diff.getAddedEdges().size() + diff.getRemovedEdges().size()
+                    > MAX_PATCH_RATIO * (data.count + edgeData.count)) {
+                loadSnapshot();
+            } else {
+                patchSnapshot(diff);
+            }
+        } else if (!edgeData.isLoaded(data, getEdgeWeightInfluence())) {
+            dropHierarchy();
+            edgeData.load(data, graph.getEdges().toArray(), getEdgeWeightInfluence());
+        }
+    }
+
+    private void loadSnapshot() {
+        convergence.restart();
+        activeNodes = null;
+        dropHierarchy();
+        Node[] nodes = graph.getNodes().toArray();
+        if (!data.isLoaded(nodes)) {
+            data.load(nodes);
+            loadNodeAttributes();
+        }
+        edgeData.load(data, graph.getEdges().toArray(), getEdgeWeightInfluence());
+        loadMasses();
+    }
+
+    private void patchSnapshot(GraphDiff diff) {
+        convergence.restart();
+        activeNodes = null;
+        dropHierarchy();
+        Collection<Node> addedNodes = diff.getAddedNodes();
+        if (!addedNodes.isEmpty()) {
+            int from = data.count;
+            data.append(addedNodes.toArray(new Node[addedNodes.size()]));
+            edgeData.appendNodes(data.count);
+            loadNodeAttributes();
+            for (int n = from; n < data.count; n++) {
+                totalMass += data.mass[n];
+            }
+        }
+        for (Edge e : diff.getAddedEdges()) {
+            edgeData.addEdge(e);
+            updateMass(e.getSource());
+            updateMass(e.getTarget());
+        }
+        for (Edge e : diff.getRemovedEdges()) {
+            edgeData.removeEdge(e);
+            updateMass(e.getSource());
+            updateMass(e.getTarget());
+        }
+        if (edgeData.getPatchCount() > MAX_PATCH_RATIO * edgeData.count || !edgeData.isLoaded(data, getEdgeWeightInfluence())) {
+            edgeData.load(data, graph.getEdges().toArray(), getEdgeWeightInfluence());
+        }
+    }
+
+    /**
+     * The coarse levels were built from the edges and masses of the graph as
+     * it was loaded: once the graph changed, go on with the graph itself.
+     */
+    private void dropHierarchy() {
+        if (hierarchy != null) {
+            hierarchy = null;
+            multilevelDone = true;
+        }
+    }
+
+    private void loadMasses() {
+        totalMass = 0;
+        for (int n = 0; n < data.count; n++) {
+            data.mass[n] = 1 + graph.getDegree(data.nodes[n]);
+            totalMass += data.mass[n];
+        }
+    }
+
+    private void updateMass(Node node) {
+        int n = ForceAtlas2Data.indexOf(node);
+        double mass = 1 + graph.getDegree(node);
+        totalMass += mass - data.mass[n];
+        data.mass[n] = mass;
+    }
+
+    private void destroyGraphObserver() {
+        if (graphObserver != null && !graphObserver.isDestroyed()) {
+            graphObserver.destroy();
+        }
+        graphObserver = null;
+    }
+
+    /**
+     * Reads the gravity sources and strengths of the loaded nodes from their
+     * 'gravity_x', 'gravity_y', 'gravity_x_strength' and 'gravity_y_strength'
+     * attributes.
+     */
+    private void loadNodeAttributes() {
+        Node[] nodes = data.nodes;
+
         // Gravity sources adjustment parameters
         double min_x = Double.POSITIVE_INFINITY;
         double max_x = 0;
@@ -127,11 +326,8 @@ public class ForceAtlas2 implements Layout {
         double max_y = 0;
         int missing = 0;
         int strength_missing = 0;
-        for (Node n : nodes) {
-            if (n.getLayoutData() == null || !(n.getLayoutData() instanceof ForceAtlas2LayoutData)) {
-                ForceAtlas2LayoutData nLayout = new ForceAtlas2LayoutData();
-                n.setLayoutData(nLayout);
-            }
+        for (int i = 0; i < data.count; i++) {
+            Node n = nodes[i];
 
             double gravity_x_strength = 1.0;
             double gravity_y_strength = 1.0;
@@ -186,16 +382,12 @@ public class ForceAtlas2 implements Layout {
             if (gravity_x > max_x) max_x = gravity_x;           
             if (gravity_y < min_y) min_y = gravity_y;            
             if (gravity_y > max_y) max_y = gravity_y;
-            
-            ForceAtlas2LayoutData nLayout = n.getLayoutData();
-            nLayout.mass = 1 + graph.getDegree(n);
-            nLayout.old_dx = 0;
-            nLayout.old_dy = 0;
-            nLayout.dx = 0;
-            nLayout.dy = 0;
 
-            nLayout.gravity_x_strength = gravity_x_strength;
-            nLayout.gravity_y_strength = gravity_y_strength;
+            // Gravity sources are centered below, once the range is known
+            data.gravity_x[i] = gravity_x;
+            data.gravity_y[i] = gravity_y;
+            data.gravity_x_strength[i] = gravity_x_strength;
+            data.gravity_y_strength[i] = gravity_y_strength;
         }
 
         if (strength_missing > 0) {
@@ -216,38 +408,15 @@ public class ForceAtlas2 implements Layout {
         }
         
         // Setting Layout data for gravity sources
-        for(Node n : nodes){
-            double gravity_y = 0.0;
-            double gravity_x = 0.0;
-            
-            try {
-                gravity_x = (Double) n.getAttribute("gravity_x");
-            }
-            catch (IllegalArgumentException ex){
-            }
-            catch (NullPointerException ex){  
-            }
-            
-            try {
-                gravity_y = (Double) n.getAttribute("gravity_y");;
-            }
-            catch (IllegalArgumentException ex){
-            }
-            catch (NullPointerException ex){  
-            }
-
-            ForceAtlas2LayoutData nLayout = n.getLayoutData();
+        for (int i = 0; i < data.count; i++) {
             //Center middle source of gravity
-            nLayout.gravity_x = ((((gravity_x - min_x) - range_x/2)/scale_x));
-            nLayout.gravity_y = ((((gravity_y - min_y) - range_y/2)/scale_y));
+            data.gravity_x[i] = ((((data.gravity_x[i] - min_x) - range_x/2)/scale_x));
+            data.gravity_y[i] = ((((data.gravity_y[i] - min_y) - range_y/2)/scale_y));
         }
         
         if (missing > 0) {
             System.out.println("Some nodes missing attributes(" + missing + ") 'gravity_x' or 'gravity_y', using 0.0 instead");
         }
-        System.out.println("Blah");
-        pool = Executors.newFixedThreadPool(threadCount);
-        currentThreadCount = threadCount;
     }
 
     @Override
@@ -256,105 +425,144 @@ public class ForceAtlas2 implements Layout {
         if (graphModel == null) {
             return;
         }
-        long start = System.nanoTime();
-        System.out.println("Running");
+        long start = metrics.startIteration();
+        Object iterationEvent = null;
+        if (events != null) {
+            iterationEvent = events.beginIteration();
+            phaseEvent = events.beginPhase();
+        }
         graph = graphModel.getGraphVisible();
 
         graph.readLock();
-        Node[] nodes = graph.getNodes().toArray();
-        Edge[] edges = graph.getEdges().toArray();
 
         // Initialise layout data
-        for (Node n : nodes) {
-            if (n.getLayoutData() == null || !(n.getLayoutData() instanceof ForceAtlas2LayoutData)) {
-                ForceAtlas2LayoutData nLayout = new ForceAtlas2LayoutData();
-                n.setLayoutData(nLayout);
+        updateSnapshot();
+        if (hierarchy != null && !hierarchy.isBuiltFor(data)) {
+            dropHierarchy();
+        }
+        if (isMultilevel() && !multilevelDone && hierarchy == null) {
+            hierarchy = Multilevel.build(data, edgeData, multilevelCoarsening, multilevelTargetSize, getEdgeWeightInfluence());
+            if (hierarchy.getLevel() == 0) {
+                hierarchy = null;
+                multilevelDone = true;
             }
-            ForceAtlas2LayoutData nLayout = n.getLayoutData();
-            nLayout.mass = 1 + graph.getDegree(n);
-            nLayout.old_dx = nLayout.dx;
-            nLayout.old_dy = nLayout.dy;
-            nLayout.dx = 0;
-            nLayout.dy = 0;
         }
+        if (nodeOrdering != NodeOrdering.Curve.NONE && hierarchy == null) {
+            if (iterationsSinceOrdering == 0) {
+                int[] order = NodeOrdering.computeOrder(data, nodeOrdering);
+                data.permute(order);
+                edgeData.permute(data, order);
+            }
+            iterationsSinceOrdering = (iterationsSinceOrdering + 1) % nodeOrderingInterval;
+        }
+
+        // In multilevel mode, iterate on the current level instead of the graph
+        ForceAtlas2Data graphData = data;
+        ForceAtlas2Edges graphEdgeData = edgeData;
+        if (hierarchy != null) {
+            data = hierarchy.getData();
+            edgeData = hierarchy.getEdges();
+        }
+        // Nodes asleep are skipped in the fused kernel, where each node only
+        // computes its own force
+        ActiveSet active = null;
+        if (isActiveSet() && hierarchy == null) {
+            if (activeNodes == null || !activeNodes.isBuiltFor(data)) {
+                activeNodes = new ActiveSet(data);
+            }
+            active = activeNodes;
+        }
+        boolean fused = isFusedKernel() || active != null;
+        data.swapForces(!fused);
+        long phaseStart = endPhase(LayoutMetrics.Phase.SNAPSHOT, start);
 
-        // If Barnes Hut active, initialize root region
+        // If Barnes Hut active, build or update the approximation
         if (isBarnesHutOptimize()) {
-            rootRegion = new Region(nodes);
-            rootRegion.buildSubRegions();
+            if (approximation == null || approximation.getBackend() != approximationBackend || approximation.data != data) {
+                approximation = ApproximateRepulsion.build(approximationBackend, data);
+            }
+            approximation.configure(this);
+            approximation.update();
+            currentTheta = getBarnesHutTheta();
+            if (isAdaptiveTheta() && approximation.isThetaUsed()) {
+                currentTheta = thetaControl.getTheta(getBarnesHutTheta());
+                if (thetaControl.isDue()) {
+                    thetaControl.prepare(data, approximation, ForceFactory.builder.buildRepulsion(data, isAdjustSizes(), getScalingRatio()));
+                    runRange(thetaControl, thetaControl.getSampleCount(), Math.min(getTaskCount(), thetaControl.getSampleCount()));
+                    thetaControl.adjust(getAdaptiveThetaError());
+                    currentTheta = thetaControl.getTheta();
+                }
+            }
+            phaseStart = endPhase(LayoutMetrics.Phase.TREE_BUILD, phaseStart);
         }
 
         // If outboundAttractionDistribution active, compensate.
         if (isOutboundAttractionDistribution()) {
-            outboundAttCompensation = 0;
-            for (Node n : nodes) {
-                ForceAtlas2LayoutData nLayout = n.getLayoutData();
-                outboundAttCompensation += nLayout.mass;
-            }
-            outboundAttCompensation /= nodes.length;
+            outboundAttCompensation = totalMass / data.count;
         }
 
-        // Repulsion (and gravity)
-        // NB: Muti-threaded
-        RepulsionForce Repulsion = ForceFactory.builder.buildRepulsion(isAdjustSizes(), getScalingRatio());
+        RepulsionForce Repulsion = ForceFactory.builder.buildRepulsion(data, isAdjustSizes(), getScalingRatio());
+        RepulsionForce GravityForce = (isStrongGravityMode()) ? (ForceFactory.builder.getStrongGravity(data, getScalingRatio(), gravityXRatio, gravityYRatio)) : (Repulsion);
+        AttractionForce Attraction = ForceFactory.builder.buildAttraction(data, isLinLogMode(), isOutboundAttractionDistribution(), isAdjustSizes(), 1 * ((isOutboundAttractionDistribution()) ? (outboundAttCompensation) : (1)));
 
-        int taskCount = 8 * currentThreadCount;  // The threadPool Executor Service will manage the fetching of tasks and threads.
-        // We make more tasks than threads because some tasks may need more time to compute.
-        ArrayList<Future> threads = new ArrayList();
-        for (int t = taskCount; t > 0; t--) {
-            int from = (int) Math.floor(nodes.length * (t - 1) / taskCount);
-            int to = (int) Math.floor(nodes.length * t / taskCount);
-            Future future = pool.submit(new NodesThread(nodes, from, to, isBarnesHutOptimize(), getBarnesHutTheta(), getGravity(), (isStrongGravityMode()) ? (ForceFactory.builder.getStrongGravity(getScalingRatio(), gravityXRatio, gravityYRatio)) : (Repulsion), getScalingRatio(), rootRegion, Repulsion));
-            threads.add(future);
+        int blockCount = ConvergenceThread.getBlockCount(data.count);
+        if (swingingBlocks.length < blockCount) {
+            swingingBlocks = new double[blockCount];
+            tractionBlocks = new double[blockCount];
+            displacementBlocks = new double[blockCount];
         }
-        for (Future future : threads) {
-            try {
-                future.get();
-            } catch (InterruptedException ex) {
-                Exceptions.printStackTrace(ex);
-            } catch (ExecutionException ex) {
-                Exceptions.printStackTrace(ex);
-            }
-        }
-
-        // Attraction
-        AttractionForce Attraction = ForceFactory.builder.buildAttraction(isLinLogMode(), isOutboundAttractionDistribution(), isAdjustSizes(), 1 * ((isOutboundAttractionDistribution()) ? (outboundAttCompensation) : (1)));
-        if (getEdgeWeightInfluence() == 0) {
-            for (Edge e : edges) {
-                Attraction.apply(e.getSource(), e.getTarget(), 1);
-            }
-        } else if (getEdgeWeightInfluence() == 1) {
-            for (Edge e : edges) {
-                Attraction.apply(e.getSource(), e.getTarget(), e.getWeight());
-            }
+        int taskCount = Math.min(getTaskCount(), blockCount);
+        ensureNodeCosts();
+        if (fused) {
+            // Attraction first, then everything else node by node.
+            // Repulsion only goes to the node being computed: within Barnes Hut
+            // leaves, doubling it stands for the other node's traversal, which
+            // otherwise adds the same force.
+            int attractionBuffers = computeAttraction(Attraction, active);
+            phaseStart = endPhase(LayoutMetrics.Phase.ATTRACTION, phaseStart);
+            RepulsionForce OwnerRepulsion = ForceFactory.builder.buildOwnerRepulsion(Repulsion, (isBarnesHutOptimize() && approximation.isSymmetric()) ? 2 : 1);
+            fusedNodesThread.set(data, 0, blockCount, attractionDx, attractionDy, attractionBuffers, isBarnesHutOptimize(), currentTheta, getGravity(), GravityForce, getScalingRatio(), approximation, OwnerRepulsion, swingingBlocks, tractionBlocks, nodeCosts, active);
+            runRange(fusedNodesThread, blockCount, taskCount);
+            phaseStart = endPhase(LayoutMetrics.Phase.REPULSION, phaseStart);
         } else {
-            for (Edge e : edges) {
-                Attraction.apply(e.getSource(), e.getTarget(), Math.pow(e.getWeight(), getEdgeWeightInfluence()));
+            // Repulsion (and gravity)
+            // NB: Muti-threaded
+            if (!isBarnesHutOptimize()) {
+                applyExactRepulsion(Repulsion);
             }
-        }
-
-        // Auto adjust speed
-        double totalSwinging = 0d;  // How much irregular movement
-        double totalEffectiveTraction = 0d;  // Hom much useful movement
-        for (Node n : nodes) {
-            ForceAtlas2LayoutData nLayout = n.getLayoutData();
-            if (!n.isFixed()) {
-                double swinging = Math.sqrt(Math.pow(nLayout.old_dx - nLayout.dx, 2) + Math.pow(nLayout.old_dy - nLayout.dy, 2));
-                totalSwinging += nLayout.mass * swinging;   // If the node has a burst change of direction, then it's not converging.
-                totalEffectiveTraction += nLayout.mass * 0.5 * Math.sqrt(Math.pow(nLayout.old_dx + nLayout.dx, 2) + Math.pow(nLayout.old_dy + nLayout.dy, 2));
+            // In deterministic mode, each node only writes its own force
+            RepulsionForce NodesRepulsion = Repulsion;
+            if (isDeterministic() && isBarnesHutOptimize()) {
+                NodesRepulsion = ForceFactory.builder.buildOwnerRepulsion(Repulsion, (approximation.isSymmetric()) ? 2 : 1);
             }
+            nodesThread.set(data, 0, data.count, isBarnesHutOptimize(), currentTheta, getGravity(), GravityForce, getScalingRatio(), approximation, NodesRepulsion, nodeCosts);
+            applyRepulsion(nodesThread);
+            phaseStart = endPhase(LayoutMetrics.Phase.REPULSION, phaseStart);
+
+            // Attraction
+            applyAttraction(Attraction);
+            phaseStart = endPhase(LayoutMetrics.Phase.ATTRACTION, phaseStart);
+
+            // Auto adjust speed
+            convergenceThread.set(data, 0, blockCount, swingingBlocks, tractionBlocks);
+            runRange(convergenceThread, blockCount, taskCount);
         }
-//        swingingHistory.add(totalSwinging);
-//        tractionHistory.add(totalEffectiveTraction);
-//        System.out.println(totalSwinging + ","+totalEffectiveTraction);
+        long repulsionInteractions = getRepulsionInteractions(fused);
+        double totalSwinging = ConvergenceThread.sum(swingingBlocks, blockCount);  // How much irregular movement
+        double totalEffectiveTraction = ConvergenceThread.sum(tractionBlocks, blockCount);  // Hom much useful movement
         // We want that swingingMovement < tolerance * convergenceMovement
+        // With the active set, all the nodes may be asleep: nothing swings nor
+        // moves, and the speed is kept for the nodes woken up later
+        boolean idle = (active != null && active.getAwakeCount() == 0) || (totalSwinging == 0 && totalEffectiveTraction == 0);
+        double previousSpeed = speed;
+        double previousSpeedEfficiency = speedEfficiency;
 
         // Optimize jitter tolerance
         // The 'right' jitter tolerance for this network. Bigger networks need more tolerance. Denser networks need less tolerance. Totally empiric.
-        double estimatedOptimalJitterTolerance = 0.05 * Math.sqrt(nodes.length);
+        double estimatedOptimalJitterTolerance = 0.05 * Math.sqrt(data.count);
         double minJT = Math.sqrt(estimatedOptimalJitterTolerance);
         double maxJT = 10;
-        double jt = jitterTolerance * Math.max(minJT, Math.min(maxJT, estimatedOptimalJitterTolerance * totalEffectiveTraction / Math.pow(nodes.length, 2)));
+        double jt = jitterTolerance * Math.max(minJT, Math.min(maxJT, estimatedOptimalJitterTolerance * totalEffectiveTraction / Math.pow(data.count, 2)));
 
         double minSpeedEfficiency = 0.05;
 
@@ -381,94 +589,359 @@ public class ForceAtlas2 implements Layout {
         // But the speed shoudn't rise too much too quickly, since it would make the convergence drop dramatically.
         double maxRise = 0.5;   // Max rise: 50%
         speed = speed + Math.min(targetSpeed - speed, maxRise * speed);
+        if (idle || Double.isNaN(speed)) {
+            speed = previousSpeed;
+            speedEfficiency = previousSpeedEfficiency;
+        }
+
+        // Energy of the positions the forces were computed for
+        double iterationEnergy = Double.NaN;
+        if (isAutoStop() && isAutoStopEnergy() && hierarchy == null && isBarnesHutOptimize() && LayoutEnergy.isSupported(approximation)) {
+            if (energy == null || !energy.isBuiltFor(data)) {
+                energy = new LayoutEnergy(data);
+            }
+            iterationEnergy = energy.compute(this, approximation, edgeData, 1 * ((isOutboundAttractionDistribution()) ? (outboundAttCompensation) : (1)));
+        }
+        phaseStart = endPhase(LayoutMetrics.Phase.CONVERGENCE, phaseStart);
 
         // Apply forces
-        if (isAdjustSizes()) {
-            // If nodes overlap prevention is active, it's not possible to trust the swinging mesure.
-            for (Node n : nodes) {
-                ForceAtlas2LayoutData nLayout = n.getLayoutData();
-                if (!n.isFixed()) {
+        int nodeCount = data.count;
+        int edgeCount = edgeData.count;
+        double iterationSpeed = speed;
+        double totalDisplacement = 0;
+        if (active == null || active.getAwakeCount() > 0) {
+            displacementThread.set(data, 0, blockCount, speed, isAdjustSizes(), displacementBlocks, active);
+            runRange(displacementThread, blockCount, taskCount);
+            totalDisplacement = ConvergenceThread.sum(displacementBlocks, blockCount);
+        }
+
+        // Convergence is only watched on the graph itself, not on the coarse
+        // levels of the multilevel mode
+        convergence.configure(getAutoStopTolerance(), getMaxIterations(), getMaxTime());
+        if (hierarchy == null) {
+            convergence.update(totalSwinging, totalEffectiveTraction, totalDisplacement, nodeCount, iterationEnergy);
+        } else {
+            convergence.countIteration();
+        }
 
-                    // Adaptive auto-speed: the speed of each node is lowered
-                    // when the node swings.
-                    double swinging = nLayout.mass * Math.sqrt((nLayout.old_dx - nLayout.dx) * (nLayout.old_dx - nLayout.dx) + (nLayout.old_dy - nLayout.dy) * (nLayout.old_dy - nLayout.dy));
-                    double factor = 0.1 * speed / (1f + Math.sqrt(speed * swinging));
+        if (hierarchy != null) {
+            data = graphData;
+            edgeData = graphEdgeData;
+            if (hierarchy.step(multilevelIterations)) {
+                // Speed is learnt again on each level
+                speed = 1.;
+                speedEfficiency = 1.;
+                convergence.restart();
+                if (hierarchy.getLevel() == 0) {
+                    hierarchy = null;
+                    multilevelDone = true;
+                } else {
+                    hierarchy.project();
+                }
+                data.publish();
+            }
+        }
+        graph.readUnlockAll();
+        phaseStart = endPhase(LayoutMetrics.Phase.APPLY, phaseStart);
 
-                    double df = Math.sqrt(Math.pow(nLayout.dx, 2) + Math.pow(nLayout.dy, 2));
-                    factor = Math.min(factor * df, 10.) / df;
+        // Sleeping and waking, once the moves and the peak displacement are known
+        if (active != null) {
+            if (iterationEvent != null) {
+                phaseEvent = events.beginPhase();
+            }
+            active.update(this, edgeData, getSleepTolerance() * convergence.getPeakDisplacement(), getSleepIterations(), getWakeInterval());
+            endPhase(LayoutMetrics.Phase.SLEEP, phaseStart);
+        }
+        metrics.endIteration(start, nodeCount, repulsionInteractions, edgeCount);
+        if (iterationEvent != null) {
+            events.endIteration(iterationEvent, nodeCount, edgeCount, iterationSpeed, totalSwinging, totalEffectiveTraction, isBarnesHutOptimize(), currentTheta);
+        }
+    }
+
+    /**
+     * Ends a phase in the metrics and the JFR events, and returns the start
+     * of the next phase.
+     */
+    private long endPhase(LayoutMetrics.Phase phase, long phaseStart) {
+        if (phaseEvent != null) {
+            events.endPhase(phaseEvent, phase);
+            phaseEvent = (phase == LayoutMetrics.Phase.APPLY || phase == LayoutMetrics.Phase.SLEEP) ? (null) : (events.beginPhase());
+        }
+        return metrics.endPhase(phase, phaseStart);
+    }
 
-                    double x = n.x() + nLayout.dx * factor;
-                    double y = n.y() + nLayout.dy * factor;
+    /**
+     * Repulsion interactions of the iteration: the costs recorded by the node
+     * tasks, or every pair with the exact repulsion.
+     */
+    private long getRepulsionInteractions(boolean fused) {
+        if (!isBarnesHutOptimize() && !fused) {
+            return (long) data.count * (data.count - 1) / 2;
+        }
+        long total = 0;
+        for (int n = 0; n < data.count; n++) {
+            total += nodeCosts[n];
+        }
+        return total;
+    }
 
-                    n.setX((float) x);
-                    n.setY((float) y);
+    /**
+     * Repulsion and gravity on all the nodes, split in tasks of similar cost
+     * according to the costs of the previous iteration, then stolen between
+     * threads to absorb what the estimate misses.
+     */
+    private void applyRepulsion(NodesThread nodes) {
+        int n = data.count;
+        for (int i = 0; i < n; i++) {
+            cumulativeCosts[i + 1] = cumulativeCosts[i] + nodeCosts[i];
+        }
+        if (workers != null) {
+            // Chunks of even cost, taken in turn by the workers
+            int chunkCount = Math.max(1, Math.min(getTaskCount(), n));
+            ensureRangeBounds(chunkCount);
+            long total = cumulativeCosts[n];
+            int i = 0;
+            for (int k = 0; k < chunkCount; k++) {
+                long target = total * k / chunkCount;
+                while (i < n && cumulativeCosts[i] < target) {
+                    i++;
                 }
+                rangeBounds[k] = i;
             }
-        } else {
-            for (Node n : nodes) {
-                ForceAtlas2LayoutData nLayout = n.getLayoutData();
-                if (!n.isFixed()) {
+            rangeBounds[chunkCount] = n;
+            workers.run(nodes, rangeBounds, chunkCount);
+            return;
+        }
+        long grain = Math.max(1, cumulativeCosts[n] / getTaskCount());
+        try {
+            pool.invoke(new NodesTask(nodes, cumulativeCosts, grain, 0, n));
+        } catch (RuntimeException ex) {
+            Exceptions.printStackTrace(ex);
+        }
+    }
 
-                    // Adaptive auto-speed: the speed of each node is lowered
-                    // when the node swings.
-                    double swinging = nLayout.mass * Math.sqrt((nLayout.old_dx - nLayout.dx) * (nLayout.old_dx - nLayout.dx) + (nLayout.old_dy - nLayout.dy) * (nLayout.old_dy - nLayout.dy));
-                    //double factor = speed / (1f + Math.sqrt(speed * swinging));
-                    double factor = speed / (1f + Math.sqrt(speed * swinging));
+    /**
+     * Costs are unknown for new nodes or indices, they start even.
+     */
+    private void ensureNodeCosts() {
+        if (nodeCostsData != data || nodeCostsVersion != data.version || nodeCosts.length != data.count) {
+            nodeCostsData = data;
+            nodeCostsVersion = data.version;
+            nodeCosts = new int[data.count];
+            cumulativeCosts = new long[data.count + 1];
+            Arrays.fill(nodeCosts, 1);
+        }
+    }
+
+    /**
+     * Attraction along all the edges. NB: Multi-threaded, each thread
+     * accumulates into its own buffers (the first one directly into the layout
+     * data), which are then summed in a fixed order so that hubs cause neither
+     * races nor contention.
+     */
+    private void applyAttraction(AttractionForce Attraction) {
+        int taskCount = Math.max(1, Math.min(getBufferCount(), edgeData.count / MIN_EDGES_PER_THREAD));
+        ensureAttractionBuffers(taskCount - 1);
+        edgesThread.set(edgeData, Attraction, taskCount, data.dx, data.dy, attractionDx, attractionDy, null);
+        runRange(edgesThread, taskCount, taskCount);
+        addBuffers(taskCount - 1, taskCount);
+    }
 
-                    double x = n.x() + nLayout.dx * factor;
-                    double y = n.y() + nLayout.dy * factor;
+    /**
+     * Exact repulsion between all the nodes, by tiles of the pair matrix.
+     * NB: Multi-threaded, each thread accumulates into its own buffers (the
+     * first one directly into the layout data), which are then summed in a
+     * fixed order. Tasks get ranges of tiles of the same cost.
+     */
+    private void applyExactRepulsion(RepulsionForce Repulsion) {
+        int tileCount = TilesThread.getTileCount(data.count);
+        int taskCount = Math.max(1, Math.min(getBufferCount(), tileCount * (tileCount + 1) / 2));
+        ensureAttractionBuffers(taskCount - 1);
+        tilesThread.set(data, Repulsion, taskCount, data.dx, data.dy, attractionDx, attractionDy);
+        runRange(tilesThread, taskCount, taskCount);
+        addBuffers(taskCount - 1, taskCount);
+    }
 
-                    n.setX((float) x);
-                    n.setY((float) y);
-                }
+    /**
+     * Adds the first bufferCount force buffers to the layout data, by ranges
+     * of nodes, each node summing the buffers in a fixed order.
+     */
+    private void addBuffers(int bufferCount, int taskCount) {
+        if (bufferCount == 0) {
+            return;
+        }
+        buffersThread.set(data, attractionDx, attractionDy, bufferCount);
+        runRange(buffersThread, data.count, taskCount);
+    }
+
+    /**
+     * Attraction along all the edges into the attraction buffers only, which
+     * are left for the caller to sum. Returns the number of buffers used.
+     */
+    private int computeAttraction(AttractionForce Attraction, ActiveSet active) {
+        int taskCount = Math.max(1, Math.min(getBufferCount(), edgeData.count / MIN_EDGES_PER_THREAD));
+        ensureAttractionBuffers(taskCount);
+        edgesThread.set(edgeData, Attraction, taskCount, null, null, attractionDx, attractionDy, active);
+        runRange(edgesThread, taskCount, taskCount);
+        return taskCount;
+    }
+
+    private void ensureAttractionBuffers(int buffers) {
+        if (attractionDx.length < buffers || (buffers > 0 && attractionDx[0].length != data.count)) {
+            attractionDx = new double[buffers][data.count];
+            attractionDy = new double[buffers][data.count];
+        }
+    }
+
+    /**
+     * Runs the task over [0, count) split in chunkCount even chunks, and waits
+     * for all of them to complete. Runs on the calling thread when there is
+     * only one chunk. The persistent workers take the chunks without
+     * allocating; on the pool, only the futures are allocated.
+     */
+    void runRange(RangeTask task, int count, int chunkCount) {
+        if (chunkCount <= 1) {
+            task.run(0, count);
+            return;
+        }
+        ensureRangeBounds(chunkCount);
+        for (int k = 0; k <= chunkCount; k++) {
+            rangeBounds[k] = (int) ((long) count * k / chunkCount);
+        }
+        if (workers != null) {
+            workers.run(task, rangeBounds, chunkCount);
+            return;
+        }
+        if (rangeChunks.length < chunkCount) {
+            rangeChunks = new RangeChunk[chunkCount];
+            for (int k = 0; k < chunkCount; k++) {
+                rangeChunks[k] = new RangeChunk();
             }
         }
-        graph.readUnlockAll();
-        long step = System.nanoTime() - start;
-        System.out.println("Time: " + step + " " + nanoStepTimes.size());
-        nanoStepTimes.add(step);
+        for (int k = 0; k < chunkCount; k++) {
+            rangeChunks[k].set(task, rangeBounds[k], rangeBounds[k + 1]);
+            rangeFutures.add(pool.submit(rangeChunks[k]));
+        }
+        for (Future future : rangeFutures) {
+            try {
+                future.get();
+            } catch (InterruptedException ex) {
+                Exceptions.printStackTrace(ex);
+            } catch (ExecutionException ex) {
+                Exceptions.printStackTrace(ex);
+            }
+        }
+        rangeFutures.clear();
+        for (int k = 0; k < chunkCount; k++) {
+            rangeChunks[k].set(null, 0, 0);
+        }
+    }
+
+    /**
+     * A chunk of a range task, as a task of the pool.
+     */
+    private static class RangeChunk implements Runnable {
+
+        private RangeTask task;
+        private int from;
+        private int to;
+
+        void set(RangeTask task, int from, int to) {
+            this.task = task;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public void run() {
+            task.run(from, to);
+        }
     }
 
+    private void ensureRangeBounds(int chunkCount) {
+        if (rangeBounds.length < chunkCount + 1) {
+            rangeBounds = new int[chunkCount + 1];
+        }
+    }
+
+    /**
+     * Number of per-thread force buffers, which sets the order of the sums.
+     * It does not depend on the number of threads in deterministic mode.
+     */
+    private int getBufferCount() {
+        return (deterministic) ? (DETERMINISTIC_BUFFERS) : (currentThreadCount);
+    }
+
+    /**
+     * Number of tasks a parallel phase should be split into.
+     */
+    int getTaskCount() {
+        return 8 * currentThreadCount;
+    }
+
+    /**
+     * Performance of the iterations since initAlgo, updated by each iteration.
+     */
+    public LayoutMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Convergence measures of the iterations since initAlgo, and why the
+     * layout stopped in auto stop mode.
+     */
+    public ConvergenceMonitor getConvergence() {
+        return convergence;
+    }
+
+    /**
+     * Adaptive theta of the Barnes Hut optimization, with the last measured
+     * error of the repulsion.
+     */
+    public AdaptiveTheta getThetaControl() {
+        return thetaControl;
+    }
+
+    /**
+     * Theta of the Barnes Hut optimization used by the last iteration: the
+     * setting, or the adapted theta in adaptive mode.
+     */
+    public double getCurrentTheta() {
+        return currentTheta;
+    }
+
+    /**
+     * Nodes still moving in sleeping nodes mode, null otherwise.
+     */
+    public ActiveSet getActiveNodes() {
+        return activeNodes;
+    }
+
+    /**
+     * In auto stop mode, false once the layout converged or ran out of
+     * iterations or time.
+     */
     @Override
     public boolean canAlgo() {
-        return graphModel != null;
+        return graphModel != null && !(isAutoStop() && convergence.getStop() != ConvergenceMonitor.Stop.NONE);
     }
 
     @Override
     public void endAlgo() {
-//        System.out.println("Writing data file");
-//        try {
-//            File file = new File("./Storage.dat");
-//            if (!file.exists()) {
-//                file.createNewFile();
-//            }
-//            FileWriter fw = new FileWriter(file);
-//            BufferedWriter bw = new BufferedWriter(fw);
-//            bw.write("Traction,Swing\n");
-//            for (int i = 0; i < tractionHistory.size(); i++) {
-//                bw.write(tractionHistory.get(i).toString() + "," + swingingHistory.get(i).toString() + "\n");
-//            }
-//            bw.flush();
-//            bw.close();
-//        }catch(IOException e){
-//
-//        }
-        try {
-            FileWriter writer = new FileWriter("Performance" + System.nanoTime() + ".dat");
-            writer.write("[");
-            for(Long l:nanoStepTimes){
-                writer.write(l + ",");
-            }
-            writer.write("]");
-            writer.close();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-
         for (Node n : graph.getNodes()) {
             n.setLayoutData(null);
         }
-        pool.shutdown();
+        destroyGraphObserver();
+        attractionDx = new double[0][];
+        attractionDy = new double[0][];
+        if (workers != null) {
+            workers.shutdown();
+            workers = null;
+        }
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
+        }
         graph.readUnlockAll();
     }
 
@@ -479,6 +952,7 @@ public class ForceAtlas2 implements Layout {
         final String FORCEATLAS2_BEHAVIOR = NbBundle.getMessage(getClass(), "ForceAtlas2.behavior");
         final String FORCEATLAS2_PERFORMANCE = NbBundle.getMessage(getClass(), "ForceAtlas2.performance");
         final String FORCEATLAS2_THREADS = NbBundle.getMessage(getClass(), "ForceAtlas2.threads");
+        final String FORCEATLAS2_STOPPING = NbBundle.getMessage(getClass(), "ForceAtlas2.stopping");
 
         try {
             properties.add(LayoutProperty.createProperty(
@@ -575,6 +1049,134 @@ public class ForceAtlas2 implements Layout {
                     NbBundle.getMessage(getClass(), "ForceAtlas2.barnesHutTheta.desc"),
                     "getBarnesHutTheta", "setBarnesHutTheta"));
 
+            properties.add(LayoutProperty.createProperty(
+                    this, Boolean.class,
+                    NbBundle.getMessage(getClass(), "ForceAtlas2.adaptiveTheta.name"),
+                    FORCEATLAS2_PERFORMANCE,
+                    "ForceAtlas2.adaptiveTheta.name",
+                    NbBundle.getMessage(getClass(), "ForceAtlas2.adaptiveTheta.desc"),
+                    "isAdaptiveTheta", "setAdaptiveTheta"));
+
+            properties.add(LayoutProperty.createProperty(
+                    this, Double.class,
+                    NbBundle.getMessage(getClass(), "ForceAtlas2.adaptiveThetaError.name"),
+                    FORCEATLAS2_PERFORMANCE,
+                    "ForceAtlas2.adaptiveThetaError.name",
+                    NbBundle.getMessage(getClass(), "ForceAtlas2.adaptiveThetaError.desc"),
+                    "getAdaptiveThetaError", "setAdaptiveThetaError"));
+
+            properties.add(LayoutProperty.createProperty(
+                    this, ApproximateRepulsion.Backend.class,
+                    NbBundle.getMessage(getClass(), "ForceAtlas2.approximationBackend.name"),
+                    FORCEATLAS2_PERFORMANCE,
+                    "ForceAtlas2.approximationBackend.name",
+                    NbBundle.getMessage(getClass(), "ForceAtlas2.approximationBackend.desc"),
+                    "getApproximationBackend", "setApproximationBackend"));
+
+            properties.add(LayoutProperty.createProperty(
+                    this, Double.class,
+                    NbBundle.getMessage(getClass(), "ForceAtlas2.barnesHutRebuildThreshold.name"),
+                    FORCEATLAS2_PERFORMANCE,
+                    "ForceAtlas2.barnesHutRebuildThreshold.name",
+                    NbBundle.getMessage(getClass(), "ForceAtlas2.barnesHutRebuildThreshold.desc"),
+                    "getBarnesHutRebuildThreshold", "setBarnesHutRebuildThreshold"));
+
+            properties.add(LayoutProperty.createProperty(
+                    this, Integer.class,
+                    NbBundle.getMessage(getClass(), "ForceAtlas2.fmmOrder.name"),
+                    FORCEATLAS2_PERFORMANCE,
+                    "ForceAtlas2.fmmOrder.name",
+                    NbBundle.getMessage(getClass(), "ForceAtlas2.fmmOrder.desc"),
+                    "getFmmOrder", "setFmmOrder"));
+
+            properties.add(LayoutProperty.createProperty(
+                    this, Boolean.class,
+                    NbBundle.getMessage(getClass(), "ForceAtlas2.fusedKernel.name"),
+                    FORCEATLAS2_PERFORMANCE,
+                    "ForceAtlas2.fusedKernel.name",
+                    NbBundle.getMessage(getClass(), "ForceAtlas2.fusedKernel.desc"),
+                    "isFusedKernel", "setFusedKernel"));
+
+            properties.add(LayoutProperty.createProperty(
+                    this, Boolean.class,
+                    NbBundle.getMessage(getClass(), "ForceAtlas2.activeSet.name"),
+                    FORCEATLAS2_PERFORMANCE,
+                    "ForceAtlas2.activeSet.name",
+                    NbBundle.getMessage(getClass(), "ForceAtlas2.activeSet.desc"),
+                    "isActiveSet", "setActiveSet"));
+
+            properties.add(LayoutProperty.createProperty(
+                    this, Double.class,
+                    NbBundle.getMessage(getClass(), "ForceAtlas2.sleepTolerance.name"),
+                    FORCEATLAS2_PERFORMANCE,
+                    "ForceAtlas2.sleepTolerance.name",
+                    NbBundle.getMessage(getClass(), "ForceAtlas2.sleepTolerance.desc"),
+                    "getSleepTolerance", "setSleepTolerance"));
+
+            properties.add(LayoutProperty.createProperty(
+                    this, Integer.class,
+                    NbBundle.getMessage(getClass(), "ForceAtlas2.sleepIterations.name"),
+                    FORCEATLAS2_PERFORMANCE,
+                    "ForceAtlas2.sleepIterations.name",
+                    NbBundle.getMessage(getClass(), "ForceAtlas2.sleepIterations.desc"),
+                    "getSleepIterations", "setSleepIterations"));
+
+            properties.add(LayoutProperty.createProperty(
+                    this, Integer.class,
+                    NbBundle.getMessage(getClass(), "ForceAtlas2.wakeInterval.name"),
+                    FORCEATLAS2_PERFORMANCE,
+                    "ForceAtlas2.wakeInterval.name",
+                    NbBundle.getMessage(getClass(), "ForceAtlas2.wakeInterval.desc"),
+                    "getWakeInterval", "setWakeInterval"));
+
+            properties.add(LayoutProperty.createProperty(
+                    this, NodeOrdering.Curve.class,
+                    NbBundle.getMessage(getClass(), "ForceAtlas2.nodeOrdering.name"),
+                    FORCEATLAS2_PERFORMANCE,
+                    "ForceAtlas2.nodeOrdering.name",
+                    NbBundle.getMessage(getClass(), "ForceAtlas2.nodeOrdering.desc"),
+                    "getNodeOrdering", "setNodeOrdering"));
+
+            properties.add(LayoutProperty.createProperty(
+                    this, Integer.class,
+                    NbBundle.getMessage(getClass(), "ForceAtlas2.nodeOrderingInterval.name"),
+                    FORCEATLAS2_PERFORMANCE,
+                    "ForceAtlas2.nodeOrderingInterval.name",
+                    NbBundle.getMessage(getClass(), "ForceAtlas2.nodeOrderingInterval.desc"),
+                    "getNodeOrderingInterval", "setNodeOrderingInterval"));
+
+            properties.add(LayoutProperty.createProperty(
+                    this, Boolean.class,
+                    NbBundle.getMessage(getClass(), "ForceAtlas2.multilevel.name"),
+                    FORCEATLAS2_PERFORMANCE,
+                    "ForceAtlas2.multilevel.name",
+                    NbBundle.getMessage(getClass(), "ForceAtlas2.multilevel.desc"),
+                    "isMultilevel", "setMultilevel"));
+
+            properties.add(LayoutProperty.createProperty(
+                    this, Multilevel.Coarsening.class,
+                    NbBundle.getMessage(getClass(), "ForceAtlas2.multilevelCoarsening.name"),
+                    FORCEATLAS2_PERFORMANCE,
+                    "ForceAtlas2.multilevelCoarsening.name",
+                    NbBundle.getMessage(getClass(), "ForceAtlas2.multilevelCoarsening.desc"),
+                    "getMultilevelCoarsening", "setMultilevelCoarsening"));
+
+            properties.add(LayoutProperty.createProperty(
+                    this, Integer.class,
+                    NbBundle.getMessage(getClass(), "ForceAtlas2.multilevelIterations.name"),
+                    FORCEATLAS2_PERFORMANCE,
+                    "ForceAtlas2.multilevelIterations.name",
+                    NbBundle.getMessage(getClass(), "ForceAtlas2.multilevelIterations.desc"),
+                    "getMultilevelIterations", "setMultilevelIterations"));
+
+            properties.add(LayoutProperty.createProperty(
+                    this, Integer.class,
+                    NbBundle.getMessage(getClass(), "ForceAtlas2.multilevelTargetSize.name"),
+                    FORCEATLAS2_PERFORMANCE,
+                    "ForceAtlas2.multilevelTargetSize.name",
+                    NbBundle.getMessage(getClass(), "ForceAtlas2.multilevelTargetSize.desc"),
+                    "getMultilevelTargetSize", "setMultilevelTargetSize"));
+
             properties.add(LayoutProperty.createProperty(
                     this, Integer.class,
                     NbBundle.getMessage(getClass(), "ForceAtlas2.threads.name"),
@@ -583,6 +1185,62 @@ public class ForceAtlas2 implements Layout {
                     NbBundle.getMessage(getClass(), "ForceAtlas2.threads.desc"),
                     "getThreadsCount", "setThreadsCount"));
 
+            properties.add(LayoutProperty.createProperty(
+                    this, Boolean.class,
+                    NbBundle.getMessage(getClass(), "ForceAtlas2.persistentWorkers.name"),
+                    FORCEATLAS2_THREADS,
+                    "ForceAtlas2.persistentWorkers.name",
+                    NbBundle.getMessage(getClass(), "ForceAtlas2.persistentWorkers.desc"),
+                    "isPersistentWorkers", "setPersistentWorkers"));
+
+            properties.add(LayoutProperty.createProperty(
+                    this, Boolean.class,
+                    NbBundle.getMessage(getClass(), "ForceAtlas2.deterministic.name"),
+                    FORCEATLAS2_THREADS,
+                    "ForceAtlas2.deterministic.name",
+                    NbBundle.getMessage(getClass(), "ForceAtlas2.deterministic.desc"),
+                    "isDeterministic", "setDeterministic"));
+
+            properties.add(LayoutProperty.createProperty(
+                    this, Boolean.class,
+                    NbBundle.getMessage(getClass(), "ForceAtlas2.autoStop.name"),
+                    FORCEATLAS2_STOPPING,
+                    "ForceAtlas2.autoStop.name",
+                    NbBundle.getMessage(getClass(), "ForceAtlas2.autoStop.desc"),
+                    "isAutoStop", "setAutoStop"));
+
+            properties.add(LayoutProperty.createProperty(
+                    this, Double.class,
+                    NbBundle.getMessage(getClass(), "ForceAtlas2.autoStopTolerance.name"),
+                    FORCEATLAS2_STOPPING,
+                    "ForceAtlas2.autoStopTolerance.name",
+                    NbBundle.getMessage(getClass(), "ForceAtlas2.autoStopTolerance.desc"),
+                    "getAutoStopTolerance", "setAutoStopTolerance"));
+
+            properties.add(LayoutProperty.createProperty(
+                    this, Boolean.class,
+                    NbBundle.getMessage(getClass(), "ForceAtlas2.autoStopEnergy.name"),
+                    FORCEATLAS2_STOPPING,
+                    "ForceAtlas2.autoStopEnergy.name",
+                    NbBundle.getMessage(getClass(), "ForceAtlas2.autoStopEnergy.desc"),
+                    "isAutoStopEnergy", "setAutoStopEnergy"));
+
+            properties.add(LayoutProperty.createProperty(
+                    this, Integer.class,
+                    NbBundle.getMessage(getClass(), "ForceAtlas2.maxIterations.name"),
+                    FORCEATLAS2_STOPPING,
+                    "ForceAtlas2.maxIterations.name",
+                    NbBundle.getMessage(getClass(), "ForceAtlas2.maxIterations.desc"),
+                    "getMaxIterations", "setMaxIterations"));
+
+            properties.add(LayoutProperty.createProperty(
+                    this, Double.class,
+                    NbBundle.getMessage(getClass(), "ForceAtlas2.maxTime.name"),
+                    FORCEATLAS2_STOPPING,
+                    "ForceAtlas2.maxTime.name",
+                    NbBundle.getMessage(getClass(), "ForceAtlas2.maxTime.desc"),
+                    "getMaxTime", "setMaxTime"));
+
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -624,7 +1282,32 @@ public class ForceAtlas2 implements Layout {
             setBarnesHutOptimize(false);
         }
         setBarnesHutTheta(1.2);
+        setAdaptiveTheta(false);
+        setAdaptiveThetaError(0.01);
+        setApproximationBackend(ApproximateRepulsion.Backend.REGION);
+        setBarnesHutRebuildThreshold(0.25);
+        setFmmOrder(6);
+        setFusedKernel(false);
+        setActiveSet(false);
+        setSleepTolerance(0.01);
+        setSleepIterations(10);
+        setWakeInterval(50);
+        setNodeOrdering(NodeOrdering.Curve.NONE);
+        setNodeOrderingInterval(20);
+        setMultilevel(false);
+        setMultilevelCoarsening(Multilevel.Coarsening.EDGE_MATCHING);
+        setMultilevelIterations(50);
+        setMultilevelTargetSize(2000);
         setThreadsCount(Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+        setPersistentWorkers(false);
+        setDeterministic(false);
+
+        // Stopping
+        setAutoStop(false);
+        setAutoStopTolerance(0.01);
+        setAutoStopEnergy(false);
+        setMaxIterations(0);
+        setMaxTime(0.);
     }
 
     @Override
@@ -647,6 +1330,135 @@ public class ForceAtlas2 implements Layout {
         this.barnesHutTheta = barnesHutTheta;
     }
 
+    public Boolean isAdaptiveTheta() {
+        return adaptiveTheta;
+    }
+
+    public void setAdaptiveTheta(Boolean adaptiveTheta) {
+        this.adaptiveTheta = adaptiveTheta;
+    }
+
+    public Double getAdaptiveThetaError() {
+        return adaptiveThetaError;
+    }
+
+    public void setAdaptiveThetaError(Double adaptiveThetaError) {
+        this.adaptiveThetaError = adaptiveThetaError;
+    }
+
+    public ApproximateRepulsion.Backend getApproximationBackend() {
+        return approximationBackend;
+    }
+
+    public void setApproximationBackend(ApproximateRepulsion.Backend approximationBackend) {
+        this.approximationBackend = approximationBackend;
+    }
+
+    public Double getBarnesHutRebuildThreshold() {
+        return barnesHutRebuildThreshold;
+    }
+
+    public void setBarnesHutRebuildThreshold(Double barnesHutRebuildThreshold) {
+        this.barnesHutRebuildThreshold = Math.max(0, barnesHutRebuildThreshold);
+    }
+
+    public Integer getFmmOrder() {
+        return fmmOrder;
+    }
+
+    public void setFmmOrder(Integer fmmOrder) {
+        this.fmmOrder = Math.max(1, fmmOrder);
+    }
+
+    public Boolean isFusedKernel() {
+        return fusedKernel;
+    }
+
+    public void setFusedKernel(Boolean fusedKernel) {
+        this.fusedKernel = fusedKernel;
+    }
+
+    public Boolean isActiveSet() {
+        return activeSet;
+    }
+
+    public void setActiveSet(Boolean activeSet) {
+        this.activeSet = activeSet;
+    }
+
+    public Double getSleepTolerance() {
+        return sleepTolerance;
+    }
+
+    public void setSleepTolerance(Double sleepTolerance) {
+        this.sleepTolerance = sleepTolerance;
+    }
+
+    public Integer getSleepIterations() {
+        return sleepIterations;
+    }
+
+    public void setSleepIterations(Integer sleepIterations) {
+        this.sleepIterations = sleepIterations;
+    }
+
+    public Integer getWakeInterval() {
+        return wakeInterval;
+    }
+
+    public void setWakeInterval(Integer wakeInterval) {
+        this.wakeInterval = wakeInterval;
+    }
+
+    public NodeOrdering.Curve getNodeOrdering() {
+        return nodeOrdering;
+    }
+
+    public void setNodeOrdering(NodeOrdering.Curve nodeOrdering) {
+        this.nodeOrdering = nodeOrdering;
+    }
+
+    public Integer getNodeOrderingInterval() {
+        return nodeOrderingInterval;
+    }
+
+    public void setNodeOrderingInterval(Integer nodeOrderingInterval) {
+        this.nodeOrderingInterval = Math.max(1, nodeOrderingInterval);
+        iterationsSinceOrdering = 0;
+    }
+
+    public Boolean isMultilevel() {
+        return multilevel;
+    }
+
+    public void setMultilevel(Boolean multilevel) {
+        this.multilevel = multilevel;
+    }
+
+    public Multilevel.Coarsening getMultilevelCoarsening() {
+        return multilevelCoarsening;
+    }
+
+    public void setMultilevelCoarsening(Multilevel.Coarsening multilevelCoarsening) {
+        this.multilevelCoarsening = multilevelCoarsening;
+    }
+
+    public Integer getMultilevelIterations() {
+        return multilevelIterations;
+    }
+
+    public void setMultilevelIterations(Integer multilevelIterations) {
+        this.multilevelIterations = Math.max(1, multilevelIterations);
+    }
+
+    public Integer getMultilevelTargetSize() {
+        return multilevelTargetSize;
+    }
+
+    public void setMultilevelTargetSize(Integer multilevelTargetSize) {
+        this.multilevelTargetSize = Math.max(1, multilevelTargetSize);
+    }
+
     public Double getEdgeWeightInfluence() {
         return edgeWeightInfluence;
     }
@@ -719,6 +1531,62 @@ public class ForceAtlas2 implements Layout {
         this.threadCount = Math.max(1, threadCount);
     }
 
+    public Boolean isPersistentWorkers() {
+        return persistentWorkers;
+    }
+
+    public void setPersistentWorkers(Boolean persistentWorkers) {
+        this.persistentWorkers = persistentWorkers;
+    }
+
+    public Boolean isAutoStop() {
+        return autoStop;
+    }
+
+    public void setAutoStop(Boolean autoStop) {
+        this.autoStop = autoStop;
+    }
+
+    public Double getAutoStopTolerance() {
+        return autoStopTolerance;
+    }
+
+    public void setAutoStopTolerance(Double autoStopTolerance) {
+        this.autoStopTolerance = autoStopTolerance;
+    }
+
+    public Boolean isAutoStopEnergy() {
+        return autoStopEnergy;
+    }
+
+    public void setAutoStopEnergy(Boolean autoStopEnergy) {
+        this.autoStopEnergy = autoStopEnergy;
+    }
+
+    public Integer getMaxIterations() {
+        return maxIterations;
+    }
+
+    public void setMaxIterations(Integer maxIterations) {
+        this.maxIterations = Math.max(0, maxIterations);
+    }
+
+    public Double getMaxTime() {
+        return maxTime;
+    }
+
+    public void setMaxTime(Double maxTime) {
+        this.maxTime = Math.max(0, maxTime);
+    }
+
+    public Boolean isDeterministic() {
+        return deterministic;
+    }
+
+    public void setDeterministic(Boolean deterministic) {
+        this.deterministic = deterministic;
+    }
+
     public Boolean isOutboundAttractionDistribution() {
         return outboundAttractionDistribution;
     }
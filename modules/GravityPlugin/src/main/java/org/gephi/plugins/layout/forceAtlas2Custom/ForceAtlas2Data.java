@@ -0,0 +1,303 @@
+/*
+Copyright 2008-2011 Gephi
+Authors : Mathieu Jacomy <mathieu.jacomy@gmail.com>
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+ */
+package org.gephi.plugins.layout.forceAtlas2Custom;
+
+import java.util.Arrays;
+import org.gephi.graph.api.Node;
+
+/**
+ * Layout state of all the nodes, stored in primitive arrays indexed by a dense
+ * node index (see ForceAtlas2LayoutData.index). Positions are copied from the
+ * graph when the nodes are loaded and written back to the nodes only when the
+ * results are published.
+ */
+public class ForceAtlas2Data {
+
+    // Null for the coarse levels of the multilevel mode, which are not published
+    public Node[] nodes = new Node[0];
+    public int count;
+    // Incremented each time nodes are loaded, structures indexed by node must then be rebuilt
+    public int version;
+    // Node state
+    public float[] x = new float[0];
+    public float[] y = new float[0];
+    public float[] size = new float[0];
+    public boolean[] fixed = new boolean[0];
+    public double[] mass = new double[0];
+    // Forces of the current and previous iterations
+    public double[] dx = new double[0];
+    public double[] dy = new double[0];
+    public double[] old_dx = new double[0];
+    public double[] old_dy = new double[0];
+    // Gravity source
+    public double[] gravity_x = new double[0];
+    public double[] gravity_y = new double[0];
+    public double[] gravity_x_strength = new double[0];
+    public double[] gravity_y_strength = new double[0];
+
+    /**
+     * Loads the given nodes, copying their position, size and fixed state.
+     * Forces computed for nodes that were already loaded are kept, so that the
+     * swinging measure survives a change of the visible graph.
+     */
+    public void load(Node[] nodes) {
+        int n = nodes.length;
+        double[] previous_dx = dx;
+        double[] previous_dy = dy;
+
+        this.nodes = nodes;
+        count = n;
+        version++;
+        x = new float[n];
+        y = new float[n];
+        size = new float[n];
+        fixed = new boolean[n];
+        mass = new double[n];
+        dx = new double[n];
+        dy = new double[n];
+        old_dx = new double[n];
+        old_dy = new double[n];
+        gravity_x = new double[n];
+        gravity_y = new double[n];
+        gravity_x_strength = new double[n];
+        gravity_y_strength = new double[n];
+
+        for (int i = 0; i < n; i++) {
+            Node node = nodes[i];
+            if (node.getLayoutData() == null || !(node.getLayoutData() instanceof ForceAtlas2LayoutData)) {
+                node.setLayoutData(new ForceAtlas2LayoutData());
+            }
+            ForceAtlas2LayoutData nLayout = node.getLayoutData();
+            if (nLayout.index >= 0 && nLayout.index < previous_dx.length) {
+                dx[i] = previous_dx[nLayout.index];
+                dy[i] = previous_dy[nLayout.index];
+            }
+            nLayout.index = i;
+
+            x[i] = node.x();
+            y[i] = node.y();
+            size[i] = node.size();
+            fixed[i] = node.isFixed();
+            mass[i] = 1;
+            gravity_x_strength[i] = 1.0;
+            gravity_y_strength[i] = 1.0;
+        }
+    }
+
+    /**
+     * Allocates n nodes that are not backed by graph nodes, with no mass.
+     */
+    public void allocate(int n) {
+        nodes = null;
+        count = n;
+        version++;
+        x = new float[n];
+        y = new float[n];
+        size = new float[n];
+        fixed = new boolean[n];
+        mass = new double[n];
+        dx = new double[n];
+        dy = new double[n];
+        old_dx = new double[n];
+        old_dy = new double[n];
+        gravity_x = new double[n];
+        gravity_y = new double[n];
+        gravity_x_strength = new double[n];
+        gravity_y_strength = new double[n];
+    }
+
+    /**
+     * Appends nodes after the loaded ones. Indices of the loaded nodes do not
+     * change.
+     */
+    public void append(Node[] added) {
+        int n = count + added.length;
+        nodes = Arrays.copyOf(nodes, n);
+        x = Arrays.copyOf(x, n);
+        y = Arrays.copyOf(y, n);
+        size = Arrays.copyOf(size, n);
+        fixed = Arrays.copyOf(fixed, n);
+        mass = Arrays.copyOf(mass, n);
+        dx = Arrays.copyOf(dx, n);
+        dy = Arrays.copyOf(dy, n);
+        old_dx = Arrays.copyOf(old_dx, n);
+        old_dy = Arrays.copyOf(old_dy, n);
+        gravity_x = Arrays.copyOf(gravity_x, n);
+        gravity_y = Arrays.copyOf(gravity_y, n);
+        gravity_x_strength = Arrays.copyOf(gravity_x_strength, n);
+        gravity_y_strength = Arrays.copyOf(gravity_y_strength, n);
+
+        for (int i = count; i < n; i++) {
+            Node node = added[i - count];
+            ForceAtlas2LayoutData nLayout = new ForceAtlas2LayoutData();
+            nLayout.index = i;
+            node.setLayoutData(nLayout);
+            nodes[i] = node;
+            x[i] = node.x();
+            y[i] = node.y();
+            size[i] = node.size();
+            fixed[i] = node.isFixed();
+            mass[i] = 1;
+            gravity_x_strength[i] = 1.0;
+            gravity_y_strength[i] = 1.0;
+        }
+        count = n;
+    }
+
+    /**
+     * Moves the nodes to new indices: node i in the new order is the node at
+     * index order[i] before. Structures indexed by node must then be rebuilt.
+     */
+    public void permute(int[] order) {
+        Node[] newNodes = new Node[count];
+        float[] newX = new float[count];
+        float[] newY = new float[count];
+        float[] newSize = new float[count];
+        boolean[] newFixed = new boolean[count];
+        double[] newMass = new double[count];
+        double[] newDx = new double[count];
+        double[] newDy = new double[count];
+        double[] newOldDx = new double[count];
+        double[] newOldDy = new double[count];
+        double[] newGravityX = new double[count];
+        double[] newGravityY = new double[count];
+        double[] newGravityXStrength = new double[count];
+        double[] newGravityYStrength = new double[count];
+        for (int i = 0; i < count; i++) {
+            int o = order[i];
+            newNodes[i] = nodes[o];
+            newX[i] = x[o];
+            newY[i] = y[o];
+            newSize[i] = size[o];
+            newFixed[i] = fixed[o];
+            newMass[i] = mass[o];
+            newDx[i] = dx[o];
+            newDy[i] = dy[o];
+            newOldDx[i] = old_dx[o];
+            newOldDy[i] = old_dy[o];
+            newGravityX[i] = gravity_x[o];
+            newGravityY[i] = gravity_y[o];
+            newGravityXStrength[i] = gravity_x_strength[o];
+            newGravityYStrength[i] = gravity_y_strength[o];
+            ForceAtlas2LayoutData nLayout = newNodes[i].getLayoutData();
+            nLayout.index = i;
+        }
+        nodes = newNodes;
+        x = newX;
+        y = newY;
+        size = newSize;
+        fixed = newFixed;
+        mass = newMass;
+        dx = newDx;
+        dy = newDy;
+        old_dx = newOldDx;
+        old_dy = newOldDy;
+        gravity_x = newGravityX;
+        gravity_y = newGravityY;
+        gravity_x_strength = newGravityXStrength;
+        gravity_y_strength = newGravityYStrength;
+        version++;
+    }
+
+    /**
+     * Returns true if the given nodes are exactly the loaded ones, in the same
+     * order.
+     */
+    public boolean isLoaded(Node[] nodes) {
+        if (nodes.length != count) {
+            return false;
+        }
+        for (int i = 0; i < count; i++) {
+            if (nodes[i] != this.nodes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Starts a new iteration: current forces become the previous ones and the
+     * current forces are reset, unless reset is false when they are about to
+     * be overwritten anyway.
+     */
+    public void swapForces(boolean reset) {
+        double[] tmp = old_dx;
+        old_dx = dx;
+        dx = tmp;
+        tmp = old_dy;
+        old_dy = dy;
+        dy = tmp;
+        if (reset) {
+            for (int i = 0; i < count; i++) {
+                dx[i] = 0;
+                dy[i] = 0;
+            }
+        }
+    }
+
+    /**
+     * Writes the positions back to the nodes.
+     */
+    public void publish() {
+        publish(0, count);
+    }
+
+    /**
+     * Writes the positions of the nodes in [from, to) back to the graph.
+     */
+    public void publish(int from, int to) {
+        if (nodes == null) {
+            return;
+        }
+        for (int i = from; i < to; i++) {
+            if (!fixed[i]) {
+                nodes[i].setX(x[i]);
+                nodes[i].setY(y[i]);
+            }
+        }
+    }
+
+    public static int indexOf(Node n) {
+        ForceAtlas2LayoutData nLayout = n.getLayoutData();
+        return nLayout.index;
+    }
+}
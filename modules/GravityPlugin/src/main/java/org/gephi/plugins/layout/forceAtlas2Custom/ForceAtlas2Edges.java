@@ -0,0 +1,243 @@
+/*
+Copyright 2008-2011 Gephi
+Authors : Mathieu Jacomy <mathieu.jacomy@gmail.com>
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+ */
+package org.gephi.plugins.layout.forceAtlas2Custom;
+
+import java.util.Arrays;
+import org.gephi.graph.api.Edge;
+
+/**
+ * Edges of the layout in compressed sparse row form: edges are sorted by
+ * source node index, the edges of source n are in [offsets[n], offsets[n+1]).
+ * Parallel edges are merged into a single edge and self loops, which have no
+ * effect, are dropped. Weights are stored with the edge weight influence
+ * already applied: all the attraction forces are linear in the weight, so a
+ * merged edge weighs the sum of the weights of its edges.
+ * <p>
+ * Edges added or removed after the load are patched in after the rows, in
+ * [offsets[nodeCount], count): a removed edge is added back with the opposite
+ * weight, which cancels its attraction.
+ */
+public class ForceAtlas2Edges {
+
+    public int count;
+    public int[] offsets = new int[1];
+    public int[] source = new int[0];
+    public int[] target = new int[0];
+    public double[] weight = new double[0];
+    private int loadedVersion = -1;
+    private double loadedEdgeWeightInfluence;
+
+    /**
+     * Returns true if edges were loaded for the currently loaded nodes and the
+     * same edge weight influence.
+     */
+    public boolean isLoaded(ForceAtlas2Data data, double edgeWeightInfluence) {
+        return loadedVersion == data.version && loadedEdgeWeightInfluence == edgeWeightInfluence;
+    }
+
+    public void load(ForceAtlas2Data data, Edge[] edges, double edgeWeightInfluence) {
+        int[] edgeSource = new int[edges.length];
+        int[] edgeTarget = new int[edges.length];
+        double[] edgeWeight = new double[edges.length];
+        for (int i = 0; i < edges.length; i++) {
+            Edge e = edges[i];
+            edgeSource[i] = ForceAtlas2Data.indexOf(e.getSource());
+            edgeTarget[i] = ForceAtlas2Data.indexOf(e.getTarget());
+            edgeWeight[i] = effectiveWeight(e.getWeight(), edgeWeightInfluence);
+        }
+        load(data, edgeSource, edgeTarget, edgeWeight, edges.length, edgeWeightInfluence);
+    }
+
+    /**
+     * Loads edges given by node indices, with weights that already have the
+     * edge weight influence applied.
+     */
+    public void load(ForceAtlas2Data data, int[] edgeSource, int[] edgeTarget, double[] edgeWeight, int edgeCount, double edgeWeightInfluence) {
+        loadedVersion = data.version;
+        loadedEdgeWeightInfluence = edgeWeightInfluence;
+
+        int n = data.count;
+        int[] rowStart = new int[n + 1];
+        for (int i = 0; i < edgeCount; i++) {
+            if (edgeSource[i] != edgeTarget[i]) {
+                rowStart[edgeSource[i] + 1]++;
+            }
+        }
+        for (int s = 0; s < n; s++) {
+            rowStart[s + 1] += rowStart[s];
+        }
+
+        // Bucket the edges by source
+        int[] cursor = Arrays.copyOf(rowStart, n);
+        int[] rowTarget = new int[rowStart[n]];
+        double[] rowWeight = new double[rowStart[n]];
+        for (int i = 0; i < edgeCount; i++) {
+            if (edgeSource[i] != edgeTarget[i]) {
+                int k = cursor[edgeSource[i]]++;
+                rowTarget[k] = edgeTarget[i];
+                rowWeight[k] = edgeWeight[i];
+            }
+        }
+
+        // Merge parallel edges, keeping the first occurrence order
+        int[] position = new int[n];
+        Arrays.fill(position, -1);
+        offsets = new int[n + 1];
+        source = new int[rowStart[n]];
+        target = new int[rowStart[n]];
+        weight = new double[rowStart[n]];
+        count = 0;
+        for (int s = 0; s < n; s++) {
+            offsets[s] = count;
+            for (int k = rowStart[s]; k < rowStart[s + 1]; k++) {
+                int t = rowTarget[k];
+                if (position[t] >= offsets[s]) {
+                    weight[position[t]] += rowWeight[k];
+                } else {
+                    position[t] = count;
+                    source[count] = s;
+                    target[count] = t;
+                    weight[count] = rowWeight[k];
+                    count++;
+                }
+            }
+        }
+        offsets[n] = count;
+        if (count < source.length) {
+            source = Arrays.copyOf(source, count);
+            target = Arrays.copyOf(target, count);
+            weight = Arrays.copyOf(weight, count);
+        }
+    }
+
+    /**
+     * Follows the nodes moved by {@link ForceAtlas2Data#permute}: rows are
+     * reordered and edge ends renumbered, without reading the graph again.
+     */
+    public void permute(ForceAtlas2Data data, int[] order) {
+        int n = order.length;
+        int[] newIndex = new int[n];
+        for (int i = 0; i < n; i++) {
+            newIndex[order[i]] = i;
+        }
+        int[] newOffsets = new int[n + 1];
+        for (int i = 0; i < n; i++) {
+            newOffsets[i + 1] = newOffsets[i] + offsets[order[i] + 1] - offsets[order[i]];
+        }
+        int[] newSource = new int[source.length];
+        int[] newTarget = new int[source.length];
+        double[] newWeight = new double[source.length];
+        for (int i = 0; i < n; i++) {
+            int k = newOffsets[i];
+            for (int e = offsets[order[i]]; e < offsets[order[i] + 1]; e++) {
+                newSource[k] = i;
+                newTarget[k] = newIndex[target[e]];
+                newWeight[k] = weight[e];
+                k++;
+            }
+        }
+        for (int e = offsets[n]; e < count; e++) {
+            newSource[e] = newIndex[source[e]];
+            newTarget[e] = newIndex[target[e]];
+            newWeight[e] = weight[e];
+        }
+        offsets = newOffsets;
+        source = newSource;
+        target = newTarget;
+        weight = newWeight;
+        loadedVersion = data.version;
+    }
+
+    /**
+     * Number of edges patched in since the last load.
+     */
+    public int getPatchCount() {
+        return count - offsets[offsets.length - 1];
+    }
+
+    /**
+     * Extends the rows to nodes appended to the layout data, with no edges.
+     */
+    public void appendNodes(int nodeCount) {
+        int rows = offsets.length - 1;
+        if (nodeCount > rows) {
+            offsets = Arrays.copyOf(offsets, nodeCount + 1);
+            Arrays.fill(offsets, rows + 1, nodeCount + 1, offsets[rows]);
+        }
+    }
+
+    public void addEdge(Edge e) {
+        patch(e, effectiveWeight(e.getWeight(), loadedEdgeWeightInfluence));
+    }
+
+    public void removeEdge(Edge e) {
+        patch(e, -effectiveWeight(e.getWeight(), loadedEdgeWeightInfluence));
+    }
+
+    private void patch(Edge e, double effectiveWeight) {
+        int s = ForceAtlas2Data.indexOf(e.getSource());
+        int t = ForceAtlas2Data.indexOf(e.getTarget());
+        if (s == t) {
+            return;
+        }
+        if (count == source.length) {
+            int capacity = Math.max(16, 2 * count);
+            source = Arrays.copyOf(source, capacity);
+            target = Arrays.copyOf(target, capacity);
+            weight = Arrays.copyOf(weight, capacity);
+        }
+        source[count] = s;
+        target[count] = t;
+        weight[count] = effectiveWeight;
+        count++;
+    }
+
+    private static double effectiveWeight(double weight, double edgeWeightInfluence) {
+        if (edgeWeightInfluence == 0) {
+            return 1;
+        } else if (edgeWeightInfluence == 1) {
+            return weight;
+        } else {
+            return Math.pow(weight, edgeWeightInfluence);
+        }
+    }
+}
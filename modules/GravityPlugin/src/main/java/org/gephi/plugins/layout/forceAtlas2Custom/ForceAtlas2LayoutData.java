@@ -44,20 +44,12 @@ package org.gephi.plugins.layout.forceAtlas2Custom;
 import org.gephi.graph.spi.LayoutData;
 
 /**
- * Data stored in Nodes and used by ForceAtlas2
+ * Data stored in Nodes and used by ForceAtlas2: the node's index in the
+ * layout state arrays (see ForceAtlas2Data)
  * @author Mathieu Jacomy
  */
 public class ForceAtlas2LayoutData implements LayoutData {
     //Data
 
-    public double dx = 0;
-    public double dy = 0;
-    public double old_dx = 0;
-    public double old_dy = 0;
-    public double mass = 1;
-    // Gravity source
-    public double gravity_x = 0;
-    public double gravity_y = 0;
-    public double gravity_x_strength = 1.0;
-    public double gravity_y_strength = 1.0;
+    public int index = -1;
 }
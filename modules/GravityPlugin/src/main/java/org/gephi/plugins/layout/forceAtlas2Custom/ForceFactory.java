@@ -41,11 +41,10 @@
  */
 package org.gephi.plugins.layout.forceAtlas2Custom;
 
-import org.gephi.graph.api.Node;
-
 /**
  * Generates the forces on demand, here are all the formulas for attraction and
- * repulsion.
+ * repulsion. Forces read the node state from a ForceAtlas2Data and accumulate
+ * into the given dx/dy arrays.
  *
  * @author Mathieu Jacomy
  */
@@ -56,45 +55,64 @@ public class ForceFactory {
     private ForceFactory() {
     }
 
-    public RepulsionForce buildRepulsion(boolean adjustBySize, double coefficient) {
+    public RepulsionForce buildRepulsion(ForceAtlas2Data data, boolean adjustBySize, double coefficient) {
         if (adjustBySize) {
-            return new linRepulsion_antiCollision(coefficient);
+            return new linRepulsion_antiCollision(data, coefficient);
         } else {
-            return new linRepulsion(coefficient);
+            return new linRepulsion(data, coefficient);
         }
     }
 
-    public RepulsionForce getStrongGravity(double coefficient, double gravityXRatio, double gravityYRatio) {
-        return new strongGravity(coefficient, gravityXRatio, gravityYRatio);
+    public RepulsionForce getStrongGravity(ForceAtlas2Data data, double coefficient, double gravityXRatio, double gravityYRatio) {
+        return new strongGravity(data, coefficient, gravityXRatio, gravityYRatio);
+    }
+
+    /**
+     * Potential energy of the linear repulsion, -coefficient * mass1 * mass2 *
+     * ln(distance), accumulated into dx in place of a force so that it can go
+     * through the Barnes Hut approximations. dy is not written, and far fields
+     * and gravity are not supported.
+     */
+    public RepulsionForce buildRepulsionPotential(ForceAtlas2Data data, double coefficient) {
+        return new linRepulsionPotential(data, coefficient);
+    }
+
+    /**
+     * Wraps a repulsion so that node-node repulsion is only applied to the
+     * first node, scaled by pairWeight. The forces of a node are then only
+     * written while computing that node.
+     */
+    public RepulsionForce buildOwnerRepulsion(RepulsionForce Repulsion, double pairWeight) {
+        return new ownerRepulsion(Repulsion, pairWeight);
     }
 
-    public AttractionForce buildAttraction(boolean logAttraction, boolean distributedAttraction, boolean adjustBySize, double coefficient) {
+    public AttractionForce buildAttraction(ForceAtlas2Data data, boolean logAttraction, boolean distributedAttraction, boolean adjustBySize, double coefficient) {
         if (adjustBySize) {
             if (logAttraction) {
                 if (distributedAttraction) {
-                    return new logAttraction_degreeDistributed_antiCollision(coefficient);
+                    return new logAttraction_degreeDistributed_antiCollision(data, coefficient);
                 } else {
-                    return new logAttraction_antiCollision(coefficient);
+                    return new logAttraction_antiCollision(data, coefficient);
                 }
             } else {
                 if (distributedAttraction) {
-                    return new linAttraction_degreeDistributed_antiCollision(coefficient);
+                    return new linAttraction_degreeDistributed_antiCollision(data, coefficient);
                 } else {
-                    return new linAttraction_antiCollision(coefficient);
+                    return new linAttraction_antiCollision(data, coefficient);
                 }
             }
         } else {
             if (logAttraction) {
                 if (distributedAttraction) {
-                    return new logAttraction_degreeDistributed(coefficient);
+                    return new logAttraction_degreeDistributed(data, coefficient);
                 } else {
-                    return new logAttraction(coefficient);
+                    return new logAttraction(data, coefficient);
                 }
             } else {
                 if (distributedAttraction) {
-                    return new linAttraction_massDistributed(coefficient);
+                    return new linAttraction_massDistributed(data, coefficient);
                 } else {
-                    return new linAttraction(coefficient);
+                    return new linAttraction(data, coefficient);
                 }
             }
         }
@@ -102,16 +120,59 @@ public class ForceFactory {
 
     public abstract class AttractionForce {
 
-        public abstract void apply(Node n1, Node n2, double e); // Model for node-node attraction (e is for edge weight if needed)
+        protected final ForceAtlas2Data data;
+
+        public AttractionForce(ForceAtlas2Data data) {
+            this.data = data;
+        }
+
+        public abstract void apply(int n1, int n2, double e, double[] dx, double[] dy); // Model for node-node attraction (e is for edge weight if needed)
+
+        public void apply(int[] source, int[] target, double[] weight, int from, int to, double[] dx, double[] dy) { // Model for a range of edges
+            for (int k = from; k < to; k++) {
+                apply(source[k], target[k], weight[k], dx, dy);
+            }
+        }
     }
 
     public abstract class RepulsionForce {
 
-        public abstract void apply(Node n1, Node n2);           // Model for node-node repulsion
+        protected final ForceAtlas2Data data;
+
+        public RepulsionForce(ForceAtlas2Data data) {
+            this.data = data;
+        }
 
-        public abstract void apply(Node n, Region r);           // Model for Barnes Hut approximation
+        public abstract void apply(int n1, int n2, double[] dx, double[] dy);      // Model for node-node repulsion
 
-        public abstract void apply(Node n, double g);           // Model for gravitation (anti-repulsion)
+        public abstract void apply(int n1, int n2, double weight, double[] dx, double[] dy);      // Model for node-node repulsion, on n1 only
+
+        public abstract void apply(int n, double massCenterX, double massCenterY, double mass, double[] dx, double[] dy); // Model for Barnes Hut approximation
+
+        public abstract void applyField(int n, double fieldX, double fieldY, double[] dx, double[] dy); // Model for a far field, sum of mass * (position of n - position) / distance^2 over distant nodes
+
+        public void apply(int n, int[] nodes, int from, int to, double[] dx, double[] dy) { // Model for node-node repulsion with a bucket of distinct nodes
+            for (int i = from; i < to; i++) {
+                apply(n, nodes[i], dx, dy);
+            }
+        }
+
+        public void apply(int n, int[] nodes, int from, int to, double weight, double[] dx, double[] dy) { // Model for node-node repulsion with a bucket of nodes, on n only
+            for (int i = from; i < to; i++) {
+                apply(n, nodes[i], weight, dx, dy);
+            }
+        }
+
+        public void applyTile(int from1, int to1, int from2, int to2, double[] dx, double[] dy) { // Model for node-node repulsion in a tile of the pair matrix, n2 < n1 on the diagonal
+            for (int n1 = from1; n1 < to1; n1++) {
+                int end = (from1 == from2) ? (n1) : (to2);
+                for (int n2 = from2; n2 < end; n2++) {
+                    apply(n1, n2, dx, dy);
+                }
+            }
+        }
+
+        public abstract void apply(int n, double g, double[] dx, double[] dy);     // Model for gravitation (anti-repulsion)
     }
 
     /*
@@ -121,65 +182,113 @@ public class ForceFactory {
 
         private double coefficient;
 
-        public linRepulsion(double c) {
+        public linRepulsion(ForceAtlas2Data data, double c) {
+            super(data);
             coefficient = c;
         }
 
         @Override
-        public void apply(Node n1, Node n2) {
-            ForceAtlas2LayoutData n1Layout = n1.getLayoutData();
-            ForceAtlas2LayoutData n2Layout = n2.getLayoutData();
-
+        public void apply(int n1, int n2, double[] dx, double[] dy) {
             // Get the distance
-            double xDist = n1.x() - n2.x();
-            double yDist = n1.y() - n2.y();
+            double xDist = data.x[n1] - data.x[n2];
+            double yDist = data.y[n1] - data.y[n2];
             double distance = (float) Math.sqrt(xDist * xDist + yDist * yDist);
 
             if (distance > 0) {
                 // NB: factor = force / distance
-                double factor = coefficient * n1Layout.mass * n2Layout.mass / distance / distance;
+                double factor = coefficient * data.mass[n1] * data.mass[n2] / distance / distance;
 
-                n1Layout.dx += xDist * factor;
-                n1Layout.dy += yDist * factor;
+                dx[n1] += xDist * factor;
+                dy[n1] += yDist * factor;
 
-                n2Layout.dx -= xDist * factor;
-                n2Layout.dy -= yDist * factor;
+                dx[n2] -= xDist * factor;
+                dy[n2] -= yDist * factor;
             }
         }
 
         @Override
-        public void apply(Node n, Region r) {
-            ForceAtlas2LayoutData nLayout = n.getLayoutData();
+        public void apply(int n1, int n2, double weight, double[] dx, double[] dy) {
+            // Get the distance
+            double xDist = data.x[n1] - data.x[n2];
+            double yDist = data.y[n1] - data.y[n2];
+            double distance = (float) Math.sqrt(xDist * xDist + yDist * yDist);
+
+            if (distance > 0) {
+                // NB: factor = force / distance
+                double factor = weight * coefficient * data.mass[n1] * data.mass[n2] / distance / distance;
+
+                dx[n1] += xDist * factor;
+                dy[n1] += yDist * factor;
+            }
+        }
 
+        @Override
+        public void apply(int n, double massCenterX, double massCenterY, double mass, double[] dx, double[] dy) {
             // Get the distance
-            double xDist = n.x() - r.getMassCenterX();
-            double yDist = n.y() - r.getMassCenterY();
+            double xDist = data.x[n] - massCenterX;
+            double yDist = data.y[n] - massCenterY;
             double distance = (float) Math.sqrt(xDist * xDist + yDist * yDist);
 
             if (distance > 0) {
                 // NB: factor = force / distance
-                double factor = coefficient * nLayout.mass * r.getMass() / distance / distance;
+                double factor = coefficient * data.mass[n] * mass / distance / distance;
 
-                nLayout.dx += xDist * factor;
-                nLayout.dy += yDist * factor;
+                dx[n] += xDist * factor;
+                dy[n] += yDist * factor;
+            }
+        }
+
+        @Override
+        public void apply(int n, int[] nodes, int from, int to, double[] dx, double[] dy) {
+            VectorKernels kernels = VectorKernels.get();
+            if (kernels != null) {
+                kernels.linRepulsion(data, coefficient, n, nodes, from, to, dx, dy);
+            } else {
+                super.apply(n, nodes, from, to, dx, dy);
             }
         }
 
         @Override
-        public void apply(Node n, double g) {
-            ForceAtlas2LayoutData nLayout = n.getLayoutData();
+        public void apply(int n, int[] nodes, int from, int to, double weight, double[] dx, double[] dy) {
+            VectorKernels kernels = VectorKernels.get();
+            if (kernels != null) {
+                kernels.linRepulsion(data, coefficient, n, nodes, from, to, weight, dx, dy);
+            } else {
+                super.apply(n, nodes, from, to, weight, dx, dy);
+            }
+        }
 
+        @Override
+        public void applyTile(int from1, int to1, int from2, int to2, double[] dx, double[] dy) {
+            VectorKernels kernels = VectorKernels.get();
+            if (kernels != null) {
+                kernels.linRepulsion(data, coefficient, from1, to1, from2, to2, dx, dy);
+            } else {
+                super.applyTile(from1, to1, from2, to2, dx, dy);
+            }
+        }
+
+        @Override
+        public void applyField(int n, double fieldX, double fieldY, double[] dx, double[] dy) {
+            double factor = coefficient * data.mass[n];
+
+            dx[n] += fieldX * factor;
+            dy[n] += fieldY * factor;
+        }
+
+        @Override
+        public void apply(int n, double g, double[] dx, double[] dy) {
             // Get the distance
-            double xDist = n.x();
-            double yDist = n.y();
+            double xDist = data.x[n];
+            double yDist = data.y[n];
             double distance = (float) Math.sqrt(xDist * xDist + yDist * yDist);
 
             if (distance > 0) {
                 // NB: factor = force / distance
-                double factor = coefficient * nLayout.mass * g / distance;
+                double factor = coefficient * data.mass[n] * g / distance;
 
-                nLayout.dx -= xDist * factor;
-                nLayout.dy -= yDist * factor;
+                dx[n] -= xDist * factor;
+                dy[n] -= yDist * factor;
             }
         }
     }
@@ -191,79 +300,102 @@ public class ForceFactory {
 
         private double coefficient;
 
-        public linRepulsion_antiCollision(double c) {
+        public linRepulsion_antiCollision(ForceAtlas2Data data, double c) {
+            super(data);
             coefficient = c;
         }
 
         @Override
-        public void apply(Node n1, Node n2) {
-            ForceAtlas2LayoutData n1Layout = n1.getLayoutData();
-            ForceAtlas2LayoutData n2Layout = n2.getLayoutData();
-
+        public void apply(int n1, int n2, double[] dx, double[] dy) {
             // Get the distance
-            double xDist = n1.x() - n2.x();
-            double yDist = n1.y() - n2.y();
-            double distance = Math.sqrt(xDist * xDist + yDist * yDist) - n1.size() - n2.size();
+            double xDist = data.x[n1] - data.x[n2];
+            double yDist = data.y[n1] - data.y[n2];
+            double distance = Math.sqrt(xDist * xDist + yDist * yDist) - data.size[n1] - data.size[n2];
 
             if (distance > 0) {
                 // NB: factor = force / distance
-                double factor = coefficient * n1Layout.mass * n2Layout.mass / distance / distance;
+                double factor = coefficient * data.mass[n1] * data.mass[n2] / distance / distance;
 
-                n1Layout.dx += xDist * factor;
-                n1Layout.dy += yDist * factor;
+                dx[n1] += xDist * factor;
+                dy[n1] += yDist * factor;
 
-                n2Layout.dx -= xDist * factor;
-                n2Layout.dy -= yDist * factor;
+                dx[n2] -= xDist * factor;
+                dy[n2] -= yDist * factor;
 
             } else if (distance < 0) {
-                double factor = 100 * coefficient * n1Layout.mass * n2Layout.mass;
+                double factor = 100 * coefficient * data.mass[n1] * data.mass[n2];
 
-                n1Layout.dx += xDist * factor;
-                n1Layout.dy += yDist * factor;
+                dx[n1] += xDist * factor;
+                dy[n1] += yDist * factor;
 
-                n2Layout.dx -= xDist * factor;
-                n2Layout.dy -= yDist * factor;
+                dx[n2] -= xDist * factor;
+                dy[n2] -= yDist * factor;
             }
         }
 
         @Override
-        public void apply(Node n, Region r) {
-            ForceAtlas2LayoutData nLayout = n.getLayoutData();
+        public void apply(int n1, int n2, double weight, double[] dx, double[] dy) {
+            // Get the distance
+            double xDist = data.x[n1] - data.x[n2];
+            double yDist = data.y[n1] - data.y[n2];
+            double distance = Math.sqrt(xDist * xDist + yDist * yDist) - data.size[n1] - data.size[n2];
+
+            if (distance > 0) {
+                // NB: factor = force / distance
+                double factor = weight * coefficient * data.mass[n1] * data.mass[n2] / distance / distance;
+
+                dx[n1] += xDist * factor;
+                dy[n1] += yDist * factor;
+            } else if (distance < 0) {
+                double factor = weight * 100 * coefficient * data.mass[n1] * data.mass[n2];
+
+                dx[n1] += xDist * factor;
+                dy[n1] += yDist * factor;
+            }
+        }
 
+        @Override
+        public void apply(int n, double massCenterX, double massCenterY, double mass, double[] dx, double[] dy) {
             // Get the distance
-            double xDist = n.x() - r.getMassCenterX();
-            double yDist = n.y() - r.getMassCenterY();
+            double xDist = data.x[n] - massCenterX;
+            double yDist = data.y[n] - massCenterY;
             double distance = (float) Math.sqrt(xDist * xDist + yDist * yDist);
 
             if (distance > 0) {
                 // NB: factor = force / distance
-                double factor = coefficient * nLayout.mass * r.getMass() / distance / distance;
+                double factor = coefficient * data.mass[n] * mass / distance / distance;
 
-                nLayout.dx += xDist * factor;
-                nLayout.dy += yDist * factor;
+                dx[n] += xDist * factor;
+                dy[n] += yDist * factor;
             } else if (distance < 0) {
-                double factor = -coefficient * nLayout.mass * r.getMass() / distance;
+                double factor = -coefficient * data.mass[n] * mass / distance;
 
-                nLayout.dx += xDist * factor;
-                nLayout.dy += yDist * factor;
+                dx[n] += xDist * factor;
+                dy[n] += yDist * factor;
             }
         }
 
         @Override
-        public void apply(Node n, double g) {
-            ForceAtlas2LayoutData nLayout = n.getLayoutData();
+        public void applyField(int n, double fieldX, double fieldY, double[] dx, double[] dy) {
+            double factor = coefficient * data.mass[n];
 
+            dx[n] += fieldX * factor;
+            dy[n] += fieldY * factor;
+        }
+
+        @Override
+        public void apply(int n, double g, double[] dx, double[] dy) {
             // Get the distance
-            double xDist = n.x();
-            double yDist = n.y();
+            double xDist = data.x[n];
+            double yDist = data.y[n];
             double distance = (float) Math.sqrt(xDist * xDist + yDist * yDist);
 
             if (distance > 0) {
                 // NB: factor = force / distance
-                double factor = coefficient * nLayout.mass * g / distance;
+                double factor = coefficient * data.mass[n] * g / distance;
 
-                nLayout.dx -= xDist * factor;
-                nLayout.dy -= yDist * factor;
+                dx[n] -= xDist * factor;
+                dy[n] -= yDist * factor;
             }
         }
     }
@@ -276,44 +408,148 @@ public class ForceFactory {
         // Scalind distance between y gravities
         private double gravityYCoeff;
 
-        public strongGravity(double c, double gravityXRatio, double gravityYRatio) {
+        public strongGravity(ForceAtlas2Data data, double c, double gravityXRatio, double gravityYRatio) {
+            super(data);
             coefficient = c;
             gravityXCoeff = gravityXRatio;
             gravityYCoeff = gravityYRatio;
         }
 
         @Override
-        public void apply(Node n1, Node n2) {
+        public void apply(int n1, int n2, double[] dx, double[] dy) {
             // Not Relevant
         }
 
         @Override
-        public void apply(Node n, Region r) {
+        public void apply(int n1, int n2, double weight, double[] dx, double[] dy) {
             // Not Relevant
         }
 
         @Override
-        public void apply(Node n, double g) {
-            ForceAtlas2LayoutData nLayout = n.getLayoutData();
+        public void apply(int n, double massCenterX, double massCenterY, double mass, double[] dx, double[] dy) {
+            // Not Relevant
+        }
 
+        @Override
+        public void applyField(int n, double fieldX, double fieldY, double[] dx, double[] dy) {
+            // Not Relevant
+        }
+
+        @Override
+        public void apply(int n, double g, double[] dx, double[] dy) {
             // Get the distance to respective sources of gravity 
-            double gx = nLayout.gravity_x * (gravityXCoeff * coefficient) ;
-            double gy = nLayout.gravity_y * (gravityYCoeff * coefficient) ;
+            double gx = data.gravity_x[n] * (gravityXCoeff * coefficient) ;
+            double gy = data.gravity_y[n] * (gravityYCoeff * coefficient) ;
                     
-            double xDist = n.x() - gx;
-            double yDist = n.y() - gy;
+            double xDist = data.x[n] - gx;
+            double yDist = data.y[n] - gy;
             double distance = (float) Math.sqrt(xDist * xDist + yDist * yDist);
 
             if (distance > 0) {
                 // NB: factor = force / distance
-                double factor = coefficient * nLayout.mass * g;
+                double factor = coefficient * data.mass[n] * g;
 
-                nLayout.dx -= xDist * factor * nLayout.gravity_x_strength;
-                nLayout.dy -= yDist * factor * nLayout.gravity_y_strength ;
+                dx[n] -= xDist * factor * data.gravity_x_strength[n];
+                dy[n] -= yDist * factor * data.gravity_y_strength[n] ;
             }
         }
     }
 
+    /*
+     * Energy of the linear repulsion, see buildRepulsionPotential
+     */
+    private class linRepulsionPotential extends RepulsionForce {
+
+        private double coefficient;
+
+        public linRepulsionPotential(ForceAtlas2Data data, double c) {
+            super(data);
+            coefficient = c;
+        }
+
+        private double potential(double xDist, double yDist, double mass) {
+            double distance = (float) Math.sqrt(xDist * xDist + yDist * yDist);
+            return (distance > 0) ? (-coefficient * mass * Math.log(distance)) : (0);
+        }
+
+        @Override
+        public void apply(int n1, int n2, double[] dx, double[] dy) {
+            double potential = potential(data.x[n1] - data.x[n2], data.y[n1] - data.y[n2], data.mass[n1] * data.mass[n2]);
+            dx[n1] += potential;
+            dx[n2] += potential;
+        }
+
+        @Override
+        public void apply(int n1, int n2, double weight, double[] dx, double[] dy) {
+            dx[n1] += weight * potential(data.x[n1] - data.x[n2], data.y[n1] - data.y[n2], data.mass[n1] * data.mass[n2]);
+        }
+
+        @Override
+        public void apply(int n, double massCenterX, double massCenterY, double mass, double[] dx, double[] dy) {
+            dx[n] += potential(data.x[n] - massCenterX, data.y[n] - massCenterY, data.mass[n] * mass);
+        }
+
+        @Override
+        public void applyField(int n, double fieldX, double fieldY, double[] dx, double[] dy) {
+            // Not Relevant
+        }
+
+        @Override
+        public void apply(int n, double g, double[] dx, double[] dy) {
+            // Not Relevant
+        }
+    }
+
+    /*
+     * Repulsion on the first node of node-node pairs only
+     */
+    private class ownerRepulsion extends RepulsionForce {
+
+        private RepulsionForce Repulsion;
+        private double pairWeight;
+
+        public ownerRepulsion(RepulsionForce Repulsion, double pairWeight) {
+            super(Repulsion.data);
+            this.Repulsion = Repulsion;
+            this.pairWeight = pairWeight;
+        }
+
+        @Override
+        public void apply(int n1, int n2, double[] dx, double[] dy) {
+            Repulsion.apply(n1, n2, pairWeight, dx, dy);
+        }
+
+        @Override
+        public void apply(int n1, int n2, double weight, double[] dx, double[] dy) {
+            Repulsion.apply(n1, n2, weight * pairWeight, dx, dy);
+        }
+
+        @Override
+        public void apply(int n, double massCenterX, double massCenterY, double mass, double[] dx, double[] dy) {
+            Repulsion.apply(n, massCenterX, massCenterY, mass, dx, dy);
+        }
+
+        @Override
+        public void applyField(int n, double fieldX, double fieldY, double[] dx, double[] dy) {
+            Repulsion.applyField(n, fieldX, fieldY, dx, dy);
+        }
+
+        @Override
+        public void apply(int n, int[] nodes, int from, int to, double[] dx, double[] dy) {
+            Repulsion.apply(n, nodes, from, to, pairWeight, dx, dy);
+        }
+
+        @Override
+        public void apply(int n, int[] nodes, int from, int to, double weight, double[] dx, double[] dy) {
+            Repulsion.apply(n, nodes, from, to, weight * pairWeight, dx, dy);
+        }
+
+        @Override
+        public void apply(int n, double g, double[] dx, double[] dy) {
+            Repulsion.apply(n, g, dx, dy);
+        }
+    }
+
     /*
      * Attraction force: Linear
      */
@@ -321,27 +557,25 @@ public class ForceFactory {
 
         private double coefficient;
 
-        public linAttraction(double c) {
+        public linAttraction(ForceAtlas2Data data, double c) {
+            super(data);
             coefficient = c;
         }
 
         @Override
-        public void apply(Node n1, Node n2, double e) {
-            ForceAtlas2LayoutData n1Layout = n1.getLayoutData();
-            ForceAtlas2LayoutData n2Layout = n2.getLayoutData();
-
+        public void apply(int n1, int n2, double e, double[] dx, double[] dy) {
             // Get the distance
-            double xDist = n1.x() - n2.x();
-            double yDist = n1.y() - n2.y();
+            double xDist = data.x[n1] - data.x[n2];
+            double yDist = data.y[n1] - data.y[n2];
 
             // NB: factor = force / distance
             double factor = -coefficient * e;
 
-            n1Layout.dx += xDist * factor;
-            n1Layout.dy += yDist * factor;
+            dx[n1] += xDist * factor;
+            dy[n1] += yDist * factor;
 
-            n2Layout.dx -= xDist * factor;
-            n2Layout.dy -= yDist * factor;
+            dx[n2] -= xDist * factor;
+            dy[n2] -= yDist * factor;
         }
     }
 
@@ -352,27 +586,25 @@ public class ForceFactory {
 
         private double coefficient;
 
-        public linAttraction_massDistributed(double c) {
+        public linAttraction_massDistributed(ForceAtlas2Data data, double c) {
+            super(data);
             coefficient = c;
         }
 
         @Override
-        public void apply(Node n1, Node n2, double e) {
-            ForceAtlas2LayoutData n1Layout = n1.getLayoutData();
-            ForceAtlas2LayoutData n2Layout = n2.getLayoutData();
-
+        public void apply(int n1, int n2, double e, double[] dx, double[] dy) {
             // Get the distance
-            double xDist = n1.x() - n2.x();
-            double yDist = n1.y() - n2.y();
+            double xDist = data.x[n1] - data.x[n2];
+            double yDist = data.y[n1] - data.y[n2];
 
             // NB: factor = force / distance
-            double factor = -coefficient * e / n1Layout.mass;
+            double factor = -coefficient * e / data.mass[n1];
 
-            n1Layout.dx += xDist * factor;
-            n1Layout.dy += yDist * factor;
+            dx[n1] += xDist * factor;
+            dy[n1] += yDist * factor;
 
-            n2Layout.dx -= xDist * factor;
-            n2Layout.dy -= yDist * factor;
+            dx[n2] -= xDist * factor;
+            dy[n2] -= yDist * factor;
         }
     }
 
@@ -383,18 +615,16 @@ public class ForceFactory {
 
         private double coefficient;
 
-        public logAttraction(double c) {
+        public logAttraction(ForceAtlas2Data data, double c) {
+            super(data);
             coefficient = c;
         }
 
         @Override
-        public void apply(Node n1, Node n2, double e) {
-            ForceAtlas2LayoutData n1Layout = n1.getLayoutData();
-            ForceAtlas2LayoutData n2Layout = n2.getLayoutData();
-
+        public void apply(int n1, int n2, double e, double[] dx, double[] dy) {
             // Get the distance
-            double xDist = n1.x() - n2.x();
-            double yDist = n1.y() - n2.y();
+            double xDist = data.x[n1] - data.x[n2];
+            double yDist = data.y[n1] - data.y[n2];
             double distance = (float) Math.sqrt(xDist * xDist + yDist * yDist);
 
             if (distance > 0) {
@@ -402,11 +632,21 @@ public class ForceFactory {
                 // NB: factor = force / distance
                 double factor = -coefficient * e * Math.log(1 + distance) / distance;
 
-                n1Layout.dx += xDist * factor;
-                n1Layout.dy += yDist * factor;
+                dx[n1] += xDist * factor;
+                dy[n1] += yDist * factor;
+
+                dx[n2] -= xDist * factor;
+                dy[n2] -= yDist * factor;
+            }
+        }
 
-                n2Layout.dx -= xDist * factor;
-                n2Layout.dy -= yDist * factor;
+        @Override
+        public void apply(int[] source, int[] target, double[] weight, int from, int to, double[] dx, double[] dy) {
+            VectorKernels kernels = VectorKernels.get();
+            if (kernels != null) {
+                kernels.logAttraction(data, coefficient, source, target, weight, from, to, dx, dy);
+            } else {
+                super.apply(source, target, weight, from, to, dx, dy);
             }
         }
     }
@@ -418,30 +658,28 @@ public class ForceFactory {
 
         private double coefficient;
 
-        public logAttraction_degreeDistributed(double c) {
+        public logAttraction_degreeDistributed(ForceAtlas2Data data, double c) {
+            super(data);
             coefficient = c;
         }
 
         @Override
-        public void apply(Node n1, Node n2, double e) {
-            ForceAtlas2LayoutData n1Layout = n1.getLayoutData();
-            ForceAtlas2LayoutData n2Layout = n2.getLayoutData();
-
+        public void apply(int n1, int n2, double e, double[] dx, double[] dy) {
             // Get the distance
-            double xDist = n1.x() - n2.x();
-            double yDist = n1.y() - n2.y();
+            double xDist = data.x[n1] - data.x[n2];
+            double yDist = data.y[n1] - data.y[n2];
             double distance = (float) Math.sqrt(xDist * xDist + yDist * yDist);
 
             if (distance > 0) {
 
                 // NB: factor = force / distance
-                double factor = -coefficient * e * Math.log(1 + distance) / distance / n1Layout.mass;
+                double factor = -coefficient * e * Math.log(1 + distance) / distance / data.mass[n1];
 
-                n1Layout.dx += xDist * factor;
-                n1Layout.dy += yDist * factor;
+                dx[n1] += xDist * factor;
+                dy[n1] += yDist * factor;
 
-                n2Layout.dx -= xDist * factor;
-                n2Layout.dy -= yDist * factor;
+                dx[n2] -= xDist * factor;
+                dy[n2] -= yDist * factor;
             }
         }
     }
@@ -453,29 +691,27 @@ public class ForceFactory {
 
         private double coefficient;
 
-        public linAttraction_antiCollision(double c) {
+        public linAttraction_antiCollision(ForceAtlas2Data data, double c) {
+            super(data);
             coefficient = c;
         }
 
         @Override
-        public void apply(Node n1, Node n2, double e) {
-            ForceAtlas2LayoutData n1Layout = n1.getLayoutData();
-            ForceAtlas2LayoutData n2Layout = n2.getLayoutData();
-
+        public void apply(int n1, int n2, double e, double[] dx, double[] dy) {
             // Get the distance
-            double xDist = n1.x() - n2.x();
-            double yDist = n1.y() - n2.y();
-            double distance = Math.sqrt(xDist * xDist + yDist * yDist) - n1.size() - n2.size();
+            double xDist = data.x[n1] - data.x[n2];
+            double yDist = data.y[n1] - data.y[n2];
+            double distance = Math.sqrt(xDist * xDist + yDist * yDist) - data.size[n1] - data.size[n2];
 
             if (distance > 0) {
                 // NB: factor = force / distance
                 double factor = -coefficient * e;
 
-                n1Layout.dx += xDist * factor;
-                n1Layout.dy += yDist * factor;
+                dx[n1] += xDist * factor;
+                dy[n1] += yDist * factor;
 
-                n2Layout.dx -= xDist * factor;
-                n2Layout.dy -= yDist * factor;
+                dx[n2] -= xDist * factor;
+                dy[n2] -= yDist * factor;
             }
         }
     }
@@ -487,29 +723,27 @@ public class ForceFactory {
 
         private double coefficient;
 
-        public linAttraction_degreeDistributed_antiCollision(double c) {
+        public linAttraction_degreeDistributed_antiCollision(ForceAtlas2Data data, double c) {
+            super(data);
             coefficient = c;
         }
 
         @Override
-        public void apply(Node n1, Node n2, double e) {
-            ForceAtlas2LayoutData n1Layout = n1.getLayoutData();
-            ForceAtlas2LayoutData n2Layout = n2.getLayoutData();
-
+        public void apply(int n1, int n2, double e, double[] dx, double[] dy) {
             // Get the distance
-            double xDist = n1.x() - n2.x();
-            double yDist = n1.y() - n2.y();
-            double distance = Math.sqrt(xDist * xDist + yDist * yDist) - n1.size() - n2.size();
+            double xDist = data.x[n1] - data.x[n2];
+            double yDist = data.y[n1] - data.y[n2];
+            double distance = Math.sqrt(xDist * xDist + yDist * yDist) - data.size[n1] - data.size[n2];
 
             if (distance > 0) {
                 // NB: factor = force / distance
-                double factor = -coefficient * e / n1Layout.mass;
+                double factor = -coefficient * e / data.mass[n1];
 
-                n1Layout.dx += xDist * factor;
-                n1Layout.dy += yDist * factor;
+                dx[n1] += xDist * factor;
+                dy[n1] += yDist * factor;
 
-                n2Layout.dx -= xDist * factor;
-                n2Layout.dy -= yDist * factor;
+                dx[n2] -= xDist * factor;
+                dy[n2] -= yDist * factor;
             }
         }
     }
@@ -521,30 +755,28 @@ public class ForceFactory {
 
         private double coefficient;
 
-        public logAttraction_antiCollision(double c) {
+        public logAttraction_antiCollision(ForceAtlas2Data data, double c) {
+            super(data);
             coefficient = c;
         }
 
         @Override
-        public void apply(Node n1, Node n2, double e) {
-            ForceAtlas2LayoutData n1Layout = n1.getLayoutData();
-            ForceAtlas2LayoutData n2Layout = n2.getLayoutData();
-
+        public void apply(int n1, int n2, double e, double[] dx, double[] dy) {
             // Get the distance
-            double xDist = n1.x() - n2.x();
-            double yDist = n1.y() - n2.y();
-            double distance = Math.sqrt(xDist * xDist + yDist * yDist) - n1.size() - n2.size();
+            double xDist = data.x[n1] - data.x[n2];
+            double yDist = data.y[n1] - data.y[n2];
+            double distance = Math.sqrt(xDist * xDist + yDist * yDist) - data.size[n1] - data.size[n2];
 
             if (distance > 0) {
 
                 // NB: factor = force / distance
                 double factor = -coefficient * e * Math.log(1 + distance) / distance;
 
-                n1Layout.dx += xDist * factor;
-                n1Layout.dy += yDist * factor;
+                dx[n1] += xDist * factor;
+                dy[n1] += yDist * factor;
 
-                n2Layout.dx -= xDist * factor;
-                n2Layout.dy -= yDist * factor;
+                dx[n2] -= xDist * factor;
+                dy[n2] -= yDist * factor;
             }
         }
     }
@@ -556,30 +788,28 @@ public class ForceFactory {
 
         private double coefficient;
 
-        public logAttraction_degreeDistributed_antiCollision(double c) {
+        public logAttraction_degreeDistributed_antiCollision(ForceAtlas2Data data, double c) {
+            super(data);
             coefficient = c;
         }
 
         @Override
-        public void apply(Node n1, Node n2, double e) {
-            ForceAtlas2LayoutData n1Layout = n1.getLayoutData();
-            ForceAtlas2LayoutData n2Layout = n2.getLayoutData();
-
+        public void apply(int n1, int n2, double e, double[] dx, double[] dy) {
             // Get the distance
-            double xDist = n1.x() - n2.x();
-            double yDist = n1.y() - n2.y();
-            double distance = Math.sqrt(xDist * xDist + yDist * yDist) - n1.size() - n2.size();
+            double xDist = data.x[n1] - data.x[n2];
+            double yDist = data.y[n1] - data.y[n2];
+            double distance = Math.sqrt(xDist * xDist + yDist * yDist) - data.size[n1] - data.size[n2];
 
             if (distance > 0) {
 
                 // NB: factor = force / distance
-                double factor = -coefficient * e * Math.log(1 + distance) / distance / n1Layout.mass;
+                double factor = -coefficient * e * Math.log(1 + distance) / distance / data.mass[n1];
 
-                n1Layout.dx += xDist * factor;
-                n1Layout.dy += yDist * factor;
+                dx[n1] += xDist * factor;
+                dy[n1] += yDist * factor;
 
-                n2Layout.dx -= xDist * factor;
-                n2Layout.dy -= yDist * factor;
+                dx[n2] -= xDist * factor;
+                dy[n2] -= yDist * factor;
             }
         }
     }
@@ -0,0 +1,174 @@
+/*
+Copyright 2008-2011 Gephi
+Authors : Mathieu Jacomy <mathieu.jacomy@gmail.com>
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+ */
+package org.gephi.plugins.layout.forceAtlas2Custom;
+
+import org.gephi.plugins.layout.forceAtlas2Custom.ForceFactory.RepulsionForce;
+
+/**
+ * All the per-node work of an iteration in one pass over a range of nodes:
+ * the force of a node is started from its attraction, then repulsion and
+ * gravity are added and its swinging and traction are summed while the node
+ * is still in cache.
+ * <p>
+ * The repulsion must only write to the node being computed (see
+ * {@link ForceFactory#buildOwnerRepulsion}), and attraction must have been
+ * computed beforehand into separate buffers, so that the force of a node is
+ * final when it is summed. Nodes are summed by the blocks of
+ * {@link ConvergenceThread}.
+ * <p>
+ * With an active set, the nodes asleep keep their last force, which is not
+ * computed, and count neither in the swinging nor in the traction.
+ */
+public class FusedNodesThread implements Runnable, RangeTask {
+
+    private ForceAtlas2Data data;
+    private int fromBlock;
+    private int toBlock;
+    private double[][] attractionDx;
+    private double[][] attractionDy;
+    private int attractionBuffers;
+    private ApproximateRepulsion approximation;
+    private boolean barnesHutOptimize;
+    private RepulsionForce Repulsion;
+    private double barnesHutTheta;
+    private double gravity;
+    private RepulsionForce GravityForce;
+    private double scaling;
+    private double[] swinging;
+    private double[] traction;
+    private int[] costs;
+    private ActiveSet active;
+
+    public FusedNodesThread() {
+    }
+
+    public FusedNodesThread(ForceAtlas2Data data, int fromBlock, int toBlock, double[][] attractionDx, double[][] attractionDy, int attractionBuffers, boolean barnesHutOptimize, double barnesHutTheta, double gravity, RepulsionForce GravityForce, double scaling, ApproximateRepulsion approximation, RepulsionForce Repulsion, double[] swinging, double[] traction, int[] costs, ActiveSet active) {
+        set(data, fromBlock, toBlock, attractionDx, attractionDy, attractionBuffers, barnesHutOptimize, barnesHutTheta, gravity, GravityForce, scaling, approximation, Repulsion, swinging, traction, costs, active);
+    }
+
+    /**
+     * Sets the parameters of the next iteration: the layout keeps a single
+     * task, so that an iteration does not allocate one.
+     */
+    public void set(ForceAtlas2Data data, int fromBlock, int toBlock, double[][] attractionDx, double[][] attractionDy, int attractionBuffers, boolean barnesHutOptimize, double barnesHutTheta, double gravity, RepulsionForce GravityForce, double scaling, ApproximateRepulsion approximation, RepulsionForce Repulsion, double[] swinging, double[] traction, int[] costs, ActiveSet active) {
+        this.data = data;
+        this.fromBlock = fromBlock;
+        this.toBlock = toBlock;
+        this.attractionDx = attractionDx;
+        this.attractionDy = attractionDy;
+        this.attractionBuffers = attractionBuffers;
+        this.approximation = approximation;
+        this.barnesHutOptimize = barnesHutOptimize;
+        this.Repulsion = Repulsion;
+        this.barnesHutTheta = barnesHutTheta;
+        this.gravity = gravity;
+        this.GravityForce = GravityForce;
+        this.scaling = scaling;
+        this.swinging = swinging;
+        this.traction = traction;
+        this.costs = costs;
+        this.active = active;
+    }
+
+    @Override
+    public void run() {
+        run(fromBlock, toBlock);
+    }
+
+    @Override
+    public void run(int fromBlock, int toBlock) {
+        double[] dx = data.dx;
+        double[] dy = data.dy;
+        double[] old_dx = data.old_dx;
+        double[] old_dy = data.old_dy;
+        double[] mass = data.mass;
+        boolean[] fixed = data.fixed;
+        int count = data.count;
+        for (int b = fromBlock; b < toBlock; b++) {
+            int to = Math.min(count, (b + 1) * ConvergenceThread.BLOCK_SIZE);
+            double totalSwinging = 0d;
+            double totalEffectiveTraction = 0d;
+            for (int n = b * ConvergenceThread.BLOCK_SIZE; n < to; n++) {
+                if (active != null && !active.isAwake(n)) {
+                    dx[n] = old_dx[n];
+                    dy[n] = old_dy[n];
+                    costs[n] = 0;
+                    continue;
+                }
+
+                // Attraction
+                double fx = 0;
+                double fy = 0;
+                for (int k = 0; k < attractionBuffers; k++) {
+                    fx += attractionDx[k][n];
+                    fy += attractionDy[k][n];
+                }
+                dx[n] = fx;
+                dy[n] = fy;
+
+                // Repulsion
+                if (barnesHutOptimize) {
+                    costs[n] = approximation.applyForce(n, Repulsion, barnesHutTheta, dx, dy);
+                } else {
+                    for (int n2 = 0; n2 < count; n2++) {
+                        Repulsion.apply(n, n2, dx, dy);
+                    }
+                    costs[n] = count;
+                }
+
+                // Gravity
+                GravityForce.apply(n, gravity / scaling, dx, dy);
+
+                if (!fixed[n]) {
+                    double sx = old_dx[n] - dx[n];
+                    double sy = old_dy[n] - dy[n];
+                    double tx = old_dx[n] + dx[n];
+                    double ty = old_dy[n] + dy[n];
+                    totalSwinging += mass[n] * Math.sqrt(sx * sx + sy * sy);
+                    totalEffectiveTraction += mass[n] * 0.5 * Math.sqrt(tx * tx + ty * ty);
+                }
+            }
+            swinging[b] = totalSwinging;
+            traction[b] = totalEffectiveTraction;
+        }
+    }
+}
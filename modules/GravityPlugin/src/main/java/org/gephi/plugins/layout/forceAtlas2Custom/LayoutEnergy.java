@@ -0,0 +1,154 @@
+/*
+Copyright 2008-2011 Gephi
+Authors : Mathieu Jacomy <mathieu.jacomy@gmail.com>
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+ */
+package org.gephi.plugins.layout.forceAtlas2Custom;
+
+import java.util.Random;
+import org.gephi.plugins.layout.forceAtlas2Custom.ForceFactory.RepulsionForce;
+
+/**
+ * Estimate of the energy of a layout, the potential whose gradient is the
+ * ForceAtlas2 forces (overlap prevention aside): attraction over all the edges
+ * and gravity over all the nodes, and repulsion of a fixed sample of nodes
+ * through the Barnes Hut approximation, scaled to all the nodes. Keeping the
+ * same sample from one iteration to the next makes the changes of the
+ * estimate follow the changes of the energy.
+ */
+public class LayoutEnergy {
+
+    public static final int SAMPLE_SIZE = 1000;
+    private final ForceAtlas2Data data;
+    private final int[] sample;
+    private final double[] potential;
+    private final double[] unused;
+
+    public LayoutEnergy(ForceAtlas2Data data) {
+        this.data = data;
+        int n = data.count;
+        if (n <= SAMPLE_SIZE) {
+            sample = new int[n];
+            for (int i = 0; i < n; i++) {
+                sample[i] = i;
+            }
+        } else {
+            // Partial Fisher-Yates shuffle
+            int[] nodes = new int[n];
+            for (int i = 0; i < n; i++) {
+                nodes[i] = i;
+            }
+            Random random = new Random(n);
+            sample = new int[SAMPLE_SIZE];
+            for (int i = 0; i < SAMPLE_SIZE; i++) {
+                int j = i + random.nextInt(n - i);
+                sample[i] = nodes[j];
+                nodes[j] = nodes[i];
+            }
+        }
+        potential = new double[n];
+        unused = new double[n];
+    }
+
+    /**
+     * Returns true if the energy can be estimated with this approximation: the
+     * multipole and mesh backends only give far fields, which have no
+     * potential here.
+     */
+    public static boolean isSupported(ApproximateRepulsion approximation) {
+        return approximation != null && approximation.isSymmetric();
+    }
+
+    public boolean isBuiltFor(ForceAtlas2Data data) {
+        return this.data == data && potential.length == data.count;
+    }
+
+    /**
+     * Energy of the layout with the settings of the given layout, the
+     * approximation being up to date.
+     */
+    public double compute(ForceAtlas2 layout, ApproximateRepulsion approximation, ForceAtlas2Edges edges, double attractionCoefficient) {
+        double scalingRatio = layout.getScalingRatio();
+
+        // Repulsion, each pair being counted from both of its nodes. Leaf pairs
+        // are weighted as in the fused kernel.
+        RepulsionForce Potential = ForceFactory.builder.buildOwnerRepulsion(ForceFactory.builder.buildRepulsionPotential(data, scalingRatio), 2);
+        double theta = layout.getCurrentTheta();
+        double repulsion = 0;
+        for (int n : sample) {
+            potential[n] = 0;
+            approximation.applyForce(n, Potential, theta, potential, unused);
+            repulsion += potential[n];
+        }
+        repulsion *= 0.5 * data.count / Math.max(1, sample.length);
+
+        // Attraction, integral of the attraction force along the edge
+        boolean log = layout.isLinLogMode();
+        boolean distributed = layout.isOutboundAttractionDistribution();
+        double attraction = 0;
+        for (int e = 0; e < edges.count; e++) {
+            int n1 = edges.source[e];
+            int n2 = edges.target[e];
+            double xDist = data.x[n1] - data.x[n2];
+            double yDist = data.y[n1] - data.y[n2];
+            double distance = Math.sqrt(xDist * xDist + yDist * yDist);
+            double energy = (log) ? ((1 + distance) * Math.log(1 + distance) - distance) : (0.5 * distance * distance);
+            energy *= attractionCoefficient * edges.weight[e];
+            attraction += (distributed) ? (energy / data.mass[n1]) : (energy);
+        }
+
+        // Gravity, linear or quadratic in the distance to the source
+        double g = layout.getGravity() / scalingRatio;
+        double gravity = 0;
+        if (layout.isStrongGravityMode()) {
+            double gravityXCoeff = layout.getGravityXRatio() * scalingRatio;
+            double gravityYCoeff = layout.getGravityYRatio() * scalingRatio;
+            for (int n = 0; n < data.count; n++) {
+                double xDist = data.x[n] - data.gravity_x[n] * gravityXCoeff;
+                double yDist = data.y[n] - data.gravity_y[n] * gravityYCoeff;
+                gravity += 0.5 * scalingRatio * data.mass[n] * g * (data.gravity_x_strength[n] * xDist * xDist + data.gravity_y_strength[n] * yDist * yDist);
+            }
+        } else {
+            for (int n = 0; n < data.count; n++) {
+                gravity += scalingRatio * data.mass[n] * g * Math.sqrt(data.x[n] * data.x[n] + data.y[n] * data.y[n]);
+            }
+        }
+        return repulsion + attraction + gravity;
+    }
+}
@@ -0,0 +1,102 @@
+/*
+Copyright 2008-2011 Gephi
+Authors : Mathieu Jacomy <mathieu.jacomy@gmail.com>
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+ */
+package org.gephi.plugins.layout.forceAtlas2Custom;
+
+/**
+ * Java Flight Recorder events of the layout: one per iteration, one per phase
+ * of an iteration and one per range of nodes computed by a NodesThread. The
+ * implementation is built from src/main/java-jfr with the "jfr" Maven profile,
+ * and needs JDK 11 or later at runtime. Otherwise get() returns null and no
+ * events are emitted. It can also be disabled with -Dforceatlas2.jfr=false.
+ * <p>
+ * The events are disabled in the default recording settings, and enabled by
+ * name in a custom settings file. When an event is not enabled, begin returns
+ * null and nothing is recorded.
+ */
+public abstract class LayoutEvents {
+
+    private static final String IMPLEMENTATION = "org.gephi.plugins.layout.forceAtlas2Custom.JfrLayoutEvents";
+    private static final LayoutEvents INSTANCE = load();
+
+    private static LayoutEvents load() {
+        if (!Boolean.parseBoolean(System.getProperty("forceatlas2.jfr", "true"))) {
+            return null;
+        }
+        try {
+            return (LayoutEvents) Class.forName(IMPLEMENTATION).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException ex) {
+            return null;
+        } catch (LinkageError ex) {
+            // Built without the profile, or no jdk.jfr module
+            return null;
+        }
+    }
+
+    /**
+     * Returns the events, or null if they are not available.
+     */
+    public static LayoutEvents get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Starts the event of an iteration, returns null if it is not enabled.
+     */
+    public abstract Object beginIteration();
+
+    public abstract void endIteration(Object event, int nodeCount, int edgeCount, double speed, double totalSwinging, double totalEffectiveTraction, boolean barnesHutOptimize, double barnesHutTheta);
+
+    /**
+     * Starts the event of a phase, returns null if it is not enabled.
+     */
+    public abstract Object beginPhase();
+
+    public abstract void endPhase(Object event, LayoutMetrics.Phase phase);
+
+    /**
+     * Starts the event of a NodesThread range, returns null if it is not
+     * enabled.
+     */
+    public abstract Object beginTask();
+
+    public abstract void endTask(Object event, int from, int to);
+}
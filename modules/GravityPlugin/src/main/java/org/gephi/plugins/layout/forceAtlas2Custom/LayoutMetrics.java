@@ -0,0 +1,239 @@
+/*
+Copyright 2008-2011 Gephi
+Authors : Mathieu Jacomy <mathieu.jacomy@gmail.com>
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+ */
+package org.gephi.plugins.layout.forceAtlas2Custom;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Performance of the iterations of a layout since initAlgo: time of each phase
+ * of an iteration, bytes allocated in each phase by the thread running the
+ * layout, and the number of nodes and force interactions computed.
+ * <p>
+ * Metrics are written by the thread running goAlgo, without synchronization:
+ * read from another thread, they are only consistent between iterations.
+ */
+public class LayoutMetrics {
+
+    public enum Phase {
+        // Reading graph changes, multilevel and node ordering
+        SNAPSHOT,
+        // Building or updating the Barnes Hut approximation
+        TREE_BUILD,
+        // Repulsion and gravity. With the fused kernel, also the swinging and
+        // traction sums
+        REPULSION,
+        ATTRACTION,
+        // Swinging and traction sums, and speed adjustment
+        CONVERGENCE,
+        // Moving the nodes and publishing the positions
+        APPLY,
+        // Putting nodes to sleep and waking them up, with the active set
+        SLEEP
+    }
+
+    private final LatencyHistogram[] phaseTimes = new LatencyHistogram[Phase.values().length];
+    private final long[] phaseAllocatedBytes = new long[Phase.values().length];
+    private final LatencyHistogram iterationTimes = new LatencyHistogram();
+    private long nodes;
+    private long repulsionInteractions;
+    private long attractionInteractions;
+    private long lastAllocatedBytes;
+
+    public LayoutMetrics() {
+        for (int p = 0; p < phaseTimes.length; p++) {
+            phaseTimes[p] = new LatencyHistogram();
+        }
+    }
+
+    public void reset() {
+        for (int p = 0; p < phaseTimes.length; p++) {
+            phaseTimes[p].reset();
+            phaseAllocatedBytes[p] = 0;
+        }
+        iterationTimes.reset();
+        nodes = 0;
+        repulsionInteractions = 0;
+        attractionInteractions = 0;
+    }
+
+    /**
+     * Starts timing an iteration, whose first phase starts now. Returns the
+     * start time, to pass to the first {@link #endPhase}.
+     */
+    long startIteration() {
+        lastAllocatedBytes = Allocation.currentThreadAllocatedBytes();
+        return System.nanoTime();
+    }
+
+    /**
+     * Records a phase started at the given time, and returns the time it ended,
+     * which is the start of the next phase.
+     */
+    long endPhase(Phase phase, long start) {
+        long end = System.nanoTime();
+        phaseTimes[phase.ordinal()].record(end - start);
+        if (lastAllocatedBytes >= 0) {
+            long allocated = Allocation.currentThreadAllocatedBytes();
+            phaseAllocatedBytes[phase.ordinal()] += allocated - lastAllocatedBytes;
+            lastAllocatedBytes = allocated;
+        }
+        return end;
+    }
+
+    /**
+     * Records an iteration started at the given time, which computed the
+     * forces of nodeCount nodes through the given number of interactions.
+     */
+    void endIteration(long start, int nodeCount, long repulsion, long attraction) {
+        iterationTimes.record(System.nanoTime() - start);
+        nodes += nodeCount;
+        repulsionInteractions += repulsion;
+        attractionInteractions += attraction;
+    }
+
+    public long getIterations() {
+        return iterationTimes.getCount();
+    }
+
+    /**
+     * Durations of the iterations, in nanoseconds.
+     */
+    public LatencyHistogram getIterationTimes() {
+        return iterationTimes;
+    }
+
+    /**
+     * Durations of the given phase, in nanoseconds. Phases that were not run in
+     * an iteration are not recorded for it.
+     */
+    public LatencyHistogram getPhaseTimes(Phase phase) {
+        return phaseTimes[phase.ordinal()];
+    }
+
+    /**
+     * Bytes allocated by the thread running the layout during the given phase,
+     * in all the iterations. Allocations of the worker threads are not
+     * counted. -1 if the JVM does not measure allocations.
+     */
+    public long getPhaseAllocatedBytes(Phase phase) {
+        return (Allocation.isSupported()) ? (phaseAllocatedBytes[phase.ordinal()]) : (-1);
+    }
+
+    /**
+     * Nodes whose forces were computed, summed over the iterations.
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Node-node and node-cell repulsions (including the near field of the
+     * approximations), summed over the iterations.
+     */
+    public long getRepulsionInteractions() {
+        return repulsionInteractions;
+    }
+
+    /**
+     * Edge attractions, summed over the iterations.
+     */
+    public long getAttractionInteractions() {
+        return attractionInteractions;
+    }
+
+    public double getNodesPerSecond() {
+        return perSecond(nodes);
+    }
+
+    public double getInteractionsPerSecond() {
+        return perSecond(repulsionInteractions + attractionInteractions);
+    }
+
+    private double perSecond(long value) {
+        long total = iterationTimes.getTotal();
+        return (total == 0) ? (0) : (value * 1e9 / total);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder s = new StringBuilder();
+        s.append(String.format("%d iterations, mean %.3f ms, %.0f nodes/s, %.0f interactions/s",
+                getIterations(), iterationTimes.getMean() / 1e6, getNodesPerSecond(), getInteractionsPerSecond()));
+        for (Phase phase : Phase.values()) {
+            LatencyHistogram times = getPhaseTimes(phase);
+            s.append(String.format("%n%s: mean %.3f ms, p50 %.3f ms, p99 %.3f ms, %d bytes allocated",
+                    phase, times.getMean() / 1e6, times.getPercentile(0.5) / 1e6, times.getPercentile(0.99) / 1e6, getPhaseAllocatedBytes(phase)));
+        }
+        return s.toString();
+    }
+
+    /*
+     * Allocation counters of the threads, on HotSpot and compatible JVMs.
+     */
+    private static class Allocation {
+
+        private static final com.sun.management.ThreadMXBean THREADS = load();
+
+        private static com.sun.management.ThreadMXBean load() {
+            try {
+                java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+                if (threads instanceof com.sun.management.ThreadMXBean) {
+                    com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean) threads;
+                    if (hotspot.isThreadAllocatedMemorySupported() && hotspot.isThreadAllocatedMemoryEnabled()) {
+                        return hotspot;
+                    }
+                }
+            } catch (LinkageError ex) {
+                // No allocation counters
+            }
+            return null;
+        }
+
+        static boolean isSupported() {
+            return THREADS != null;
+        }
+
+        static long currentThreadAllocatedBytes() {
+            return (THREADS == null) ? (-1) : (THREADS.getThreadAllocatedBytes(Thread.currentThread().getId()));
+        }
+    }
+}
@@ -0,0 +1,654 @@
+/*
+Copyright 2008-2011 Gephi
+Authors : Mathieu Jacomy <mathieu.jacomy@gmail.com>
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+ */
+package org.gephi.plugins.layout.forceAtlas2Custom;
+
+import java.util.Arrays;
+
+/**
+ * Barnes Hut optimization on a quadtree built in parallel from Morton
+ * (Z-order) keys. Positions are quantized on a 2^16 grid and interleaved into
+ * 32 bits keys, which are sorted with a parallel radix sort. The cells are then
+ * the ranges of sorted nodes sharing a key prefix: a cell is split on the first
+ * 2 bits digit where its first and last keys differ, so cells with a single
+ * non-empty quadrant are skipped. Mass centers and sizes are computed in
+ * parallel with the same formulas as Region.updateMassAndGeometry. The tree
+ * is stored and traversed like a FlatQuadTree.
+ */
+public class MortonQuadTree extends FlatQuadTree {
+
+    private static final int RESOLUTION = 0xFFFF;
+    private static final int RADIX_BITS = 8;
+    private static final int RADIX = 1 << RADIX_BITS;
+    // Nodes of a segment, mass centers and sizes are computed by segments
+    private static final int SEGMENT_SIZE = 4096;
+    // Below this number of nodes per task, the work is not split further
+    private static final int MIN_TASK_SIZE = 1024;
+    // Subtrees left to each task once the top levels are split serially
+    private static final int SUBTREES_PER_TASK = 4;
+    private ForceAtlas2 layout;
+    private int[] keys = new int[0];
+    private int[] keysBuffer = new int[0];
+    private int[] orderBuffer = new int[0];
+    private int[][] histograms = new int[0][];
+    // Segments: part of the range of a cell
+    private int segmentCount;
+    private int[] segmentCell = new int[0];
+    private int[] segmentFrom = new int[0];
+    private int[] segmentTo = new int[0];
+    private double[] segmentMass = new double[0];
+    private double[] segmentSumX = new double[0];
+    private double[] segmentSumY = new double[0];
+    private double[] segmentSize = new double[0];
+    // First segment of each cell, and of the cells of each task
+    private int[] firstSegment = new int[0];
+    private int[] taskSegments = new int[0];
+    // Roots of the subtrees derived in parallel, split between tasks by node
+    // counts. Each task numbers the cells of its subtrees from 0, before they
+    // are appended to the tree at the offset of the task.
+    private int rootCount;
+    private int[] roots = new int[0];
+    private int[] rootFirstChild = new int[0];
+    private int[] rootChildCount = new int[0];
+    private int[] rootBounds = new int[0];
+    private SubtreeCells[] subtrees = new SubtreeCells[0];
+    private int[] subtreeOffsets = new int[0];
+    // State of the current phase, read by its tasks
+    private int phaseTaskCount;
+    private double[] taskBounds = new double[0];
+    private double originX;
+    private double originY;
+    private double scale;
+    private int passShift;
+    // Tasks of the phases, over task indices, nodes or segments
+    private final RangeTask boundsTask = new RangeTask() {
+        @Override
+        public void run(int fromTask, int toTask) {
+            int n = data.count;
+            float[] x = data.x;
+            float[] y = data.y;
+            for (int t = fromTask; t < toTask; t++) {
+                int from = (int) ((long) n * t / phaseTaskCount);
+                int to = (int) ((long) n * (t + 1) / phaseTaskCount);
+                double minX = Double.POSITIVE_INFINITY;
+                double minY = Double.POSITIVE_INFINITY;
+                double maxX = Double.NEGATIVE_INFINITY;
+                double maxY = Double.NEGATIVE_INFINITY;
+                for (int i = from; i < to; i++) {
+                    minX = Math.min(minX, x[i]);
+                    minY = Math.min(minY, y[i]);
+                    maxX = Math.max(maxX, x[i]);
+                    maxY = Math.max(maxY, y[i]);
+                }
+                taskBounds[4 * t] = minX;
+                taskBounds[4 * t + 1] = minY;
+                taskBounds[4 * t + 2] = maxX;
+                taskBounds[4 * t + 3] = maxY;
+            }
+        }
+    };
+    private final RangeTask keysTask = new RangeTask() {
+        @Override
+        public void run(int from, int to) {
+            float[] x = data.x;
+            float[] y = data.y;
+            for (int i = from; i < to; i++) {
+                int qx = Math.min(RESOLUTION, (int) ((x[i] - originX) * scale));
+                int qy = Math.min(RESOLUTION, (int) ((y[i] - originY) * scale));
+                keys[i] = (spreadBits(qx) << 1) | spreadBits(qy);
+                order[i] = i;
+            }
+        }
+    };
+    private final RangeTask histogramTask = new RangeTask() {
+        @Override
+        public void run(int fromTask, int toTask) {
+            int n = data.count;
+            for (int t = fromTask; t < toTask; t++) {
+                int from = (int) ((long) n * t / phaseTaskCount);
+                int to = (int) ((long) n * (t + 1) / phaseTaskCount);
+                int[] histogram = histograms[t];
+                Arrays.fill(histogram, 0);
+                for (int i = from; i < to; i++) {
+                    histogram[(keys[i] >>> passShift) & (RADIX - 1)]++;
+                }
+            }
+        }
+    };
+    private final RangeTask scatterTask = new RangeTask() {
+        @Override
+        public void run(int fromTask, int toTask) {
+            int n = data.count;
+            for (int t = fromTask; t < toTask; t++) {
+                int from = (int) ((long) n * t / phaseTaskCount);
+                int to = (int) ((long) n * (t + 1) / phaseTaskCount);
+                int[] offsets = histograms[t];
+                for (int i = from; i < to; i++) {
+                    int position = offsets[(keys[i] >>> passShift) & (RADIX - 1)]++;
+                    keysBuffer[position] = keys[i];
+                    orderBuffer[position] = order[i];
+                }
+            }
+        }
+    };
+    private final RangeTask subtreeTask = new RangeTask() {
+        @Override
+        public void run(int fromTask, int toTask) {
+            for (int t = fromTask; t < toTask; t++) {
+                SubtreeCells cells = subtrees[t];
+                cells.count = 0;
+                for (int r = rootBounds[t]; r < rootBounds[t + 1]; r++) {
+                    int first = cells.count;
+                    rootFirstChild[r] = first;
+                    rootChildCount[r] = addChildren(cells, start[roots[r]], end[roots[r]]);
+                    for (int c = first; c < cells.count; c++) {
+                        if (getSplitShift(cells.start[c], cells.end[c]) >= 0) {
+                            int childFrom = cells.count;
+                            int children = addChildren(cells, cells.start[c], cells.end[c]);
+                            cells.firstChild[c] = childFrom;
+                            cells.childCount[c] = children;
+                        }
+                    }
+                }
+            }
+        }
+    };
+    private final RangeTask appendTask = new RangeTask() {
+        @Override
+        public void run(int fromTask, int toTask) {
+            for (int t = fromTask; t < toTask; t++) {
+                SubtreeCells cells = subtrees[t];
+                int offset = subtreeOffsets[t];
+                for (int i = 0; i < cells.count; i++) {
+                    int c = offset + i;
+                    start[c] = cells.start[i];
+                    end[c] = cells.end[i];
+                    depth[c] = cells.depth[i];
+                    firstChild[c] = (cells.firstChild[i] < 0) ? (-1) : (offset + cells.firstChild[i]);
+                    childCount[c] = cells.childCount[i];
+                    mass[c] = 0;
+                }
+                for (int r = rootBounds[t]; r < rootBounds[t + 1]; r++) {
+                    firstChild[roots[r]] = offset + rootFirstChild[r];
+                    childCount[roots[r]] = rootChildCount[r];
+                }
+            }
+        }
+    };
+    private final RangeTask segmentCountTask = new RangeTask() {
+        @Override
+        public void run(int fromTask, int toTask) {
+            for (int t = fromTask; t < toTask; t++) {
+                int from = (int) ((long) cellCount * t / phaseTaskCount);
+                int to = (int) ((long) cellCount * (t + 1) / phaseTaskCount);
+                int count = 0;
+                for (int c = from; c < to; c++) {
+                    count += getSegmentCount(c);
+                }
+                taskSegments[t] = count;
+            }
+        }
+    };
+    private final RangeTask segmentTask = new RangeTask() {
+        @Override
+        public void run(int fromTask, int toTask) {
+            for (int t = fromTask; t < toTask; t++) {
+                int from = (int) ((long) cellCount * t / phaseTaskCount);
+                int to = (int) ((long) cellCount * (t + 1) / phaseTaskCount);
+                int s = taskSegments[t];
+                for (int c = from; c < to; c++) {
+                    firstSegment[c] = s;
+                    if (end[c] - start[c] > 1) {
+                        for (int i = start[c]; i < end[c]; i += SEGMENT_SIZE) {
+                            segmentCell[s] = c;
+                            segmentFrom[s] = i;
+                            segmentTo[s] = Math.min(end[c], i + SEGMENT_SIZE);
+                            s++;
+                        }
+                    }
+                }
+            }
+        }
+    };
+    private final RangeTask massTask = new RangeTask() {
+        @Override
+        public void run(int from, int to) {
+            for (int s = from; s < to; s++) {
+                double segmentMassSum = 0;
+                double massSumX = 0;
+                double massSumY = 0;
+                for (int i = segmentFrom[s]; i < segmentTo[s]; i++) {
+                    int n = order[i];
+                    segmentMassSum += data.mass[n];
+                    massSumX += data.x[n] * data.mass[n];
+                    massSumY += data.y[n] * data.mass[n];
+                }
+                segmentMass[s] = segmentMassSum;
+                segmentSumX[s] = massSumX;
+                segmentSumY[s] = massSumY;
+            }
+        }
+    };
+    private final RangeTask cellMassTask = new RangeTask() {
+        @Override
+        public void run(int from, int to) {
+            for (int c = from; c < to; c++) {
+                int segments = getSegmentCount(c);
+                if (segments == 0) {
+                    continue;
+                }
+                mass[c] = 0;
+                massCenterX[c] = 0;
+                massCenterY[c] = 0;
+                for (int s = firstSegment[c]; s < firstSegment[c] + segments; s++) {
+                    mass[c] += segmentMass[s];
+                    massCenterX[c] += segmentSumX[s];
+                    massCenterY[c] += segmentSumY[s];
+                }
+                massCenterX[c] /= mass[c];
+                massCenterY[c] /= mass[c];
+            }
+        }
+    };
+    private final RangeTask sizeTask = new RangeTask() {
+        @Override
+        public void run(int from, int to) {
+            for (int s = from; s < to; s++) {
+                int c = segmentCell[s];
+                double centerX = massCenterX[c];
+                double centerY = massCenterY[c];
+                double maxSize = Double.MIN_VALUE;
+                for (int i = segmentFrom[s]; i < segmentTo[s]; i++) {
+                    int n = order[i];
+                    double distance = Math.sqrt((data.x[n] - centerX) * (data.x[n] - centerX) + (data.y[n] - centerY) * (data.y[n] - centerY));
+                    maxSize = Math.max(maxSize, 2 * distance);
+                }
+                segmentSize[s] = maxSize;
+            }
+        }
+    };
+    private final RangeTask cellSizeTask = new RangeTask() {
+        @Override
+        public void run(int from, int to) {
+            for (int c = from; c < to; c++) {
+                int segments = getSegmentCount(c);
+                if (segments == 0) {
+                    continue;
+                }
+                size[c] = segmentSize[firstSegment[c]];
+                for (int s = firstSegment[c] + 1; s < firstSegment[c] + segments; s++) {
+                    size[c] = Math.max(size[c], segmentSize[s]);
+                }
+            }
+        }
+    };
+
+    public MortonQuadTree(ForceAtlas2Data data) {
+        super(data);
+    }
+
+    @Override
+    public Backend getBackend() {
+        return Backend.MORTON_QUADTREE;
+    }
+
+    @Override
+    public void configure(ForceAtlas2 layout) {
+        this.layout = layout;
+    }
+
+    @Override
+    public void update() {
+        int n = data.count;
+        if (order.length != n) {
+            order = new int[n];
+            scratch = new int[n];
+            keys = new int[n];
+            keysBuffer = new int[n];
+            orderBuffer = new int[n];
+        }
+        cellCount = 0;
+        if (n == 0) {
+            return;
+        }
+        int taskCount = Math.max(1, Math.min(layout.getTaskCount(), n / MIN_TASK_SIZE));
+
+        computeKeys(taskCount);
+        sortKeys(taskCount);
+        buildCells(taskCount);
+        computeMassAndGeometry(taskCount);
+    }
+
+    private void computeKeys(int taskCount) {
+        int n = data.count;
+
+        // Bounding box
+        phaseTaskCount = taskCount;
+        if (taskBounds.length != 4 * taskCount) {
+            taskBounds = new double[4 * taskCount];
+        }
+        layout.runRange(boundsTask, taskCount, taskCount);
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (int t = 0; t < taskCount; t++) {
+            minX = Math.min(minX, taskBounds[4 * t]);
+            minY = Math.min(minY, taskBounds[4 * t + 1]);
+            maxX = Math.max(maxX, taskBounds[4 * t + 2]);
+            maxY = Math.max(maxY, taskBounds[4 * t + 3]);
+        }
+        originX = minX;
+        originY = minY;
+        double extent = Math.max(maxX - minX, maxY - minY);
+        scale = (extent > 0) ? (RESOLUTION / extent) : (0);
+
+        // Keys
+        layout.runRange(keysTask, n, taskCount);
+    }
+
+    /*
+     * Spreads the 16 low bits of v on the even bits of the result
+     */
+    static int spreadBits(int v) {
+        v &= 0x0000FFFF;
+        v = (v | (v << 8)) & 0x00FF00FF;
+        v = (v | (v << 4)) & 0x0F0F0F0F;
+        v = (v | (v << 2)) & 0x33333333;
+        v = (v | (v << 1)) & 0x55555555;
+        return v;
+    }
+
+    /*
+     * Parallel LSD radix sort of the keys, moving the nodes along. Each pass is
+     * stable: a histogram per task, then each task scatters its range.
+     */
+    private void sortKeys(int taskCount) {
+        if (histograms.length != taskCount) {
+            histograms = new int[taskCount][RADIX];
+        }
+        phaseTaskCount = taskCount;
+        for (int shift = 0; shift < 32; shift += RADIX_BITS) {
+            passShift = shift;
+            layout.runRange(histogramTask, taskCount, taskCount);
+
+            // Histograms become the scatter offsets of each task
+            int offset = 0;
+            for (int digit = 0; digit < RADIX; digit++) {
+                for (int t = 0; t < taskCount; t++) {
+                    int count = histograms[t][digit];
+                    histograms[t][digit] = offset;
+                    offset += count;
+                }
+            }
+            layout.runRange(scatterTask, taskCount, taskCount);
+
+            int[] sortedKeys = keysBuffer;
+            int[] sortedOrder = orderBuffer;
+            keysBuffer = keys;
+            orderBuffer = order;
+            keys = sortedKeys;
+            order = sortedOrder;
+        }
+    }
+
+    /*
+     * Cells from the sorted keys, breadth first so that children are
+     * contiguous. The top levels are split serially, down to cells small
+     * enough for a task, whose subtrees are then derived in parallel and
+     * appended in task order.
+     */
+    private void buildCells(int taskCount) {
+        int n = data.count;
+        int subtreeSize = Math.max(MIN_TASK_SIZE, n / (SUBTREES_PER_TASK * taskCount));
+        rootCount = 0;
+        newCell(0, n, 0);
+        for (int c = 0; c < cellCount; c++) {
+            int from = start[c];
+            int to = end[c];
+            int shift = getSplitShift(from, to);
+            if (shift < 0) {
+                continue;
+            }
+            if (to - from <= subtreeSize) {
+                addRoot(c);
+                continue;
+            }
+            firstChild[c] = cellCount;
+            int childFrom = from;
+            while (childFrom < to) {
+                int childTo = getChildEnd(childFrom, to, shift);
+                newCell(childFrom, childTo, getChildDepth(shift));
+                childCount[c]++;
+                childFrom = childTo;
+            }
+        }
+        if (rootCount == 0) {
+            return;
+        }
+
+        // Subtrees split between tasks by node counts
+        int subtreeTaskCount = Math.min(taskCount, rootCount);
+        if (subtrees.length < subtreeTaskCount) {
+            subtrees = Arrays.copyOf(subtrees, subtreeTaskCount);
+            rootBounds = new int[subtreeTaskCount + 1];
+            subtreeOffsets = new int[subtreeTaskCount];
+            for (int t = 0; t < subtreeTaskCount; t++) {
+                if (subtrees[t] == null) {
+                    subtrees[t] = new SubtreeCells();
+                }
+            }
+        }
+        long total = 0;
+        for (int r = 0; r < rootCount; r++) {
+            total += end[roots[r]] - start[roots[r]];
+        }
+        long cumulative = 0;
+        int task = 1;
+        rootBounds[0] = 0;
+        for (int r = 0; r < rootCount; r++) {
+            while (task < subtreeTaskCount && cumulative >= total * task / subtreeTaskCount) {
+                rootBounds[task++] = r;
+            }
+            cumulative += end[roots[r]] - start[roots[r]];
+        }
+        while (task <= subtreeTaskCount) {
+            rootBounds[task++] = rootCount;
+        }
+        layout.runRange(subtreeTask, subtreeTaskCount, subtreeTaskCount);
+
+        int offset = cellCount;
+        for (int t = 0; t < subtreeTaskCount; t++) {
+            subtreeOffsets[t] = offset;
+            offset += subtrees[t].count;
+        }
+        ensureCellCapacity(offset);
+        layout.runRange(appendTask, subtreeTaskCount, subtreeTaskCount);
+        cellCount = offset;
+    }
+
+    private void addRoot(int c) {
+        if (rootCount == roots.length) {
+            int capacity = Math.max(16, 2 * rootCount);
+            roots = Arrays.copyOf(roots, capacity);
+            rootFirstChild = Arrays.copyOf(rootFirstChild, capacity);
+            rootChildCount = Arrays.copyOf(rootChildCount, capacity);
+        }
+        roots[rootCount++] = c;
+    }
+
+    /*
+     * Adds the children of the range to the cells of a subtree, and returns
+     * their number.
+     */
+    private int addChildren(SubtreeCells cells, int from, int to) {
+        int shift = getSplitShift(from, to);
+        int count = 0;
+        int childFrom = from;
+        while (childFrom < to) {
+            int childTo = getChildEnd(childFrom, to, shift);
+            cells.add(childFrom, childTo, getChildDepth(shift));
+            count++;
+            childFrom = childTo;
+        }
+        return count;
+    }
+
+    /*
+     * Shift of the 2 bits digit the range is split on, or -1 for a single
+     * node or nodes at the same quantized position.
+     */
+    private int getSplitShift(int from, int to) {
+        if (to - from < 2 || keys[from] == keys[to - 1]) {
+            return -1;
+        }
+        return 30 - 2 * (Integer.numberOfLeadingZeros(keys[from] ^ keys[to - 1]) / 2);
+    }
+
+    private static int getChildDepth(int shift) {
+        return (30 - shift) / 2 + 1;
+    }
+
+    private int getChildEnd(int from, int to, int shift) {
+        int quadrant = (keys[from] >>> shift) & 3;
+        return (quadrant == 3) ? (to) : (firstWithQuadrantAbove(from, to, shift, quadrant));
+    }
+
+    /*
+     * First index in [from, to) whose quadrant at shift is above the given
+     * one. Keys in the range share their prefix above shift, so quadrants are
+     * sorted.
+     */
+    private int firstWithQuadrantAbove(int from, int to, int shift, int quadrant) {
+        int low = from;
+        int high = to;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (((keys[middle] >>> shift) & 3) <= quadrant) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private void computeMassAndGeometry(int taskCount) {
+        // Split the ranges of the cells into segments of similar cost: each
+        // task counts the segments of its cells, then numbers them from the
+        // sum of the previous counts
+        int cellTaskCount = Math.max(1, Math.min(taskCount, cellCount / MIN_TASK_SIZE));
+        if (taskSegments.length < cellTaskCount) {
+            taskSegments = new int[cellTaskCount];
+        }
+        if (firstSegment.length < cellCount) {
+            firstSegment = new int[start.length];
+        }
+        phaseTaskCount = cellTaskCount;
+        layout.runRange(segmentCountTask, cellTaskCount, cellTaskCount);
+        int segments = 0;
+        for (int t = 0; t < cellTaskCount; t++) {
+            int count = taskSegments[t];
+            taskSegments[t] = segments;
+            segments += count;
+        }
+        ensureSegmentCapacity(segments);
+        segmentCount = segments;
+        layout.runRange(segmentTask, cellTaskCount, cellTaskCount);
+        int segmentTaskCount = Math.max(1, Math.min(taskCount, segments));
+
+        // Masses and mass centers, summed by segments then by cells
+        layout.runRange(massTask, segments, segmentTaskCount);
+        layout.runRange(cellMassTask, cellCount, cellTaskCount);
+
+        // Sizes
+        layout.runRange(sizeTask, segments, segmentTaskCount);
+        layout.runRange(cellSizeTask, cellCount, cellTaskCount);
+    }
+
+    private int getSegmentCount(int c) {
+        int count = end[c] - start[c];
+        return (count > 1) ? ((count + SEGMENT_SIZE - 1) / SEGMENT_SIZE) : (0);
+    }
+
+    private void ensureSegmentCapacity(int capacity) {
+        if (capacity > segmentCell.length) {
+            capacity = Math.max(capacity, 2 * segmentCell.length);
+            segmentCell = Arrays.copyOf(segmentCell, capacity);
+            segmentFrom = Arrays.copyOf(segmentFrom, capacity);
+            segmentTo = Arrays.copyOf(segmentTo, capacity);
+            segmentMass = Arrays.copyOf(segmentMass, capacity);
+            segmentSumX = Arrays.copyOf(segmentSumX, capacity);
+            segmentSumY = Arrays.copyOf(segmentSumY, capacity);
+            segmentSize = Arrays.copyOf(segmentSize, capacity);
+        }
+    }
+
+    /*
+     * Cells of the subtrees of a task, numbered from 0.
+     */
+    private static class SubtreeCells {
+
+        private int count;
+        private int[] start = new int[16];
+        private int[] end = new int[16];
+        private int[] depth = new int[16];
+        private int[] firstChild = new int[16];
+        private int[] childCount = new int[16];
+
+        void add(int from, int to, int cellDepth) {
+            if (count == start.length) {
+                int capacity = 2 * count;
+                start = Arrays.copyOf(start, capacity);
+                end = Arrays.copyOf(end, capacity);
+                depth = Arrays.copyOf(depth, capacity);
+                firstChild = Arrays.copyOf(firstChild, capacity);
+                childCount = Arrays.copyOf(childCount, capacity);
+            }
+            start[count] = from;
+            end[count] = to;
+            depth[count] = cellDepth;
+            firstChild[count] = -1;
+            childCount[count] = 0;
+            count++;
+        }
+    }
+}
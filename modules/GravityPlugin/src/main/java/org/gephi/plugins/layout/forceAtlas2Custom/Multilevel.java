@@ -0,0 +1,362 @@
+/*
+Copyright 2008-2011 Gephi
+Authors : Mathieu Jacomy <mathieu.jacomy@gmail.com>
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+ */
+package org.gephi.plugins.layout.forceAtlas2Custom;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Hierarchy of coarsened graphs for the multilevel mode. Level 0 is the graph
+ * itself, each level above merges pairs of nodes of the level below into
+ * super-nodes, whose mass is the sum of theirs. The layout starts on the
+ * coarsest level with the usual forces, then positions are interpolated down
+ * one level at a time and refined, which untangles the global structure of
+ * large graphs in far fewer iterations at full resolution.
+ */
+public class Multilevel {
+
+    public enum Coarsening {
+
+        EDGE_MATCHING, GRAVITY_CLUSTERS
+    }
+
+    // Coarsening stops when a level does not shrink below this ratio
+    private static final double MIN_REDUCTION = 0.9;
+    private static final int MAX_LEVELS = 30;
+    private final List<ForceAtlas2Data> levelData = new ArrayList<ForceAtlas2Data>();
+    private final List<ForceAtlas2Edges> levelEdges = new ArrayList<ForceAtlas2Edges>();
+    // Index in level k + 1 of the super-node each node of level k is merged into
+    private final List<int[]> parents = new ArrayList<int[]>();
+    private final int graphVersion;
+    private final int graphCount;
+    private int level;
+    private int iterations;
+
+    private Multilevel(ForceAtlas2Data data, ForceAtlas2Edges edges) {
+        levelData.add(data);
+        levelEdges.add(edges);
+        graphVersion = data.version;
+        graphCount = data.count;
+    }
+
+    /**
+     * Coarsens the graph until it has at most targetSize nodes, or stops
+     * shrinking.
+     */
+    public static Multilevel build(ForceAtlas2Data data, ForceAtlas2Edges edges, Coarsening coarsening, int targetSize, double edgeWeightInfluence) {
+        Multilevel multilevel = new Multilevel(data, edges);
+        Random random = new Random(data.count);
+        while (data.count > targetSize && multilevel.parents.size() < MAX_LEVELS) {
+            int[] parent = new int[data.count];
+            int coarseCount = match(data, edges, coarsening, parent, random);
+            if (coarseCount > MIN_REDUCTION * data.count) {
+                break;
+            }
+            ForceAtlas2Data coarseData = coarsen(data, parent, coarseCount);
+            ForceAtlas2Edges coarseEdges = coarsen(edges, parent, coarseData, edgeWeightInfluence);
+            multilevel.parents.add(parent);
+            multilevel.levelData.add(coarseData);
+            multilevel.levelEdges.add(coarseEdges);
+            data = coarseData;
+            edges = coarseEdges;
+        }
+        multilevel.level = multilevel.parents.size();
+        return multilevel;
+    }
+
+    /**
+     * Pairs nodes along their heaviest edges, relative to the masses so that
+     * light nodes merge first. With gravity clusters, only nodes with the same
+     * gravity source are paired, and the nodes left over in a cluster are
+     * paired together. Returns the number of super-nodes.
+     */
+    private static int match(ForceAtlas2Data data, ForceAtlas2Edges edges, Coarsening coarsening, int[] parent, Random random) {
+        int n = data.count;
+        boolean clusters = coarsening == Coarsening.GRAVITY_CLUSTERS;
+
+        // Undirected adjacency
+        int[] adjacencyStart = new int[n + 1];
+        for (int e = 0; e < edges.count; e++) {
+            if (edges.weight[e] > 0) {
+                adjacencyStart[edges.source[e] + 1]++;
+                adjacencyStart[edges.target[e] + 1]++;
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            adjacencyStart[i + 1] += adjacencyStart[i];
+        }
+        int[] cursor = new int[n];
+        System.arraycopy(adjacencyStart, 0, cursor, 0, n);
+        int[] adjacent = new int[adjacencyStart[n]];
+        double[] adjacentWeight = new double[adjacencyStart[n]];
+        for (int e = 0; e < edges.count; e++) {
+            if (edges.weight[e] > 0) {
+                int s = edges.source[e];
+                int t = edges.target[e];
+                adjacent[cursor[s]] = t;
+                adjacentWeight[cursor[s]++] = edges.weight[e];
+                adjacent[cursor[t]] = s;
+                adjacentWeight[cursor[t]++] = edges.weight[e];
+            }
+        }
+
+        // Visit the nodes in random order
+        int[] visit = new int[n];
+        for (int i = 0; i < n; i++) {
+            visit[i] = i;
+        }
+        for (int i = n - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = visit[i];
+            visit[i] = visit[j];
+            visit[j] = tmp;
+        }
+
+        Arrays.fill(parent, -1);
+        int coarseCount = 0;
+        for (int v = 0; v < n; v++) {
+            int i = visit[v];
+            if (parent[i] >= 0) {
+                continue;
+            }
+            int best = -1;
+            double bestScore = 0;
+            for (int k = adjacencyStart[i]; k < adjacencyStart[i + 1]; k++) {
+                int j = adjacent[k];
+                if (parent[j] >= 0 || j == i || (clusters && !sameCluster(data, i, j))) {
+                    continue;
+                }
+                double score = adjacentWeight[k] / (data.mass[i] * data.mass[j]);
+                if (score > bestScore) {
+                    best = j;
+                    bestScore = score;
+                }
+            }
+            parent[i] = coarseCount;
+            if (best >= 0) {
+                parent[best] = coarseCount;
+            }
+            coarseCount++;
+        }
+
+        if (clusters) {
+            // Pair the nodes left alone in each cluster
+            int[] childCount = new int[coarseCount];
+            for (int i = 0; i < n; i++) {
+                childCount[parent[i]]++;
+            }
+            // Node waiting for a partner, by gravity_x then gravity_y
+            Map<Double, Map<Double, Integer>> pending = new HashMap<Double, Map<Double, Integer>>();
+            int[] merged = new int[coarseCount];
+            for (int c = 0; c < coarseCount; c++) {
+                merged[c] = c;
+            }
+            for (int v = 0; v < n; v++) {
+                int i = visit[v];
+                if (childCount[parent[i]] != 1) {
+                    continue;
+                }
+                Map<Double, Integer> cluster = pending.get(data.gravity_x[i]);
+                if (cluster == null) {
+                    cluster = new HashMap<Double, Integer>();
+                    pending.put(data.gravity_x[i], cluster);
+                }
+                Integer other = cluster.remove(data.gravity_y[i]);
+                if (other != null) {
+                    merged[parent[i]] = parent[other];
+                } else {
+                    cluster.put(data.gravity_y[i], i);
+                }
+            }
+            // Renumber the super-nodes that are left
+            int[] index = new int[coarseCount];
+            int count = 0;
+            for (int c = 0; c < coarseCount; c++) {
+                index[c] = (merged[c] == c) ? (count++) : (-1);
+            }
+            for (int i = 0; i < n; i++) {
+                parent[i] = index[merged[parent[i]]];
+            }
+            coarseCount = count;
+        }
+        return coarseCount;
+    }
+
+    private static boolean sameCluster(ForceAtlas2Data data, int i, int j) {
+        return data.gravity_x[i] == data.gravity_x[j] && data.gravity_y[i] == data.gravity_y[j];
+    }
+
+    /*
+     * Super-nodes sum the masses of their nodes and sit at their center of
+     * mass. They are only fixed if all their nodes are.
+     */
+    private static ForceAtlas2Data coarsen(ForceAtlas2Data data, int[] parent, int coarseCount) {
+        ForceAtlas2Data coarse = new ForceAtlas2Data();
+        coarse.allocate(coarseCount);
+        double[] sumX = new double[coarseCount];
+        double[] sumY = new double[coarseCount];
+        double[] sumSize = new double[coarseCount];
+        Arrays.fill(coarse.fixed, true);
+        for (int i = 0; i < data.count; i++) {
+            int p = parent[i];
+            double m = data.mass[i];
+            coarse.mass[p] += m;
+            sumX[p] += m * data.x[i];
+            sumY[p] += m * data.y[i];
+            sumSize[p] += data.size[i] * data.size[i];
+            coarse.fixed[p] &= data.fixed[i];
+            coarse.gravity_x[p] += m * data.gravity_x[i];
+            coarse.gravity_y[p] += m * data.gravity_y[i];
+            coarse.gravity_x_strength[p] += m * data.gravity_x_strength[i];
+            coarse.gravity_y_strength[p] += m * data.gravity_y_strength[i];
+        }
+        for (int p = 0; p < coarseCount; p++) {
+            double m = coarse.mass[p];
+            coarse.x[p] = (float) (sumX[p] / m);
+            coarse.y[p] = (float) (sumY[p] / m);
+            // Keep the area of the nodes
+            coarse.size[p] = (float) Math.sqrt(sumSize[p]);
+            coarse.gravity_x[p] /= m;
+            coarse.gravity_y[p] /= m;
+            coarse.gravity_x_strength[p] /= m;
+            coarse.gravity_y_strength[p] /= m;
+        }
+        return coarse;
+    }
+
+    /*
+     * Edges between super-nodes carry the summed weights of the edges between
+     * their nodes, edges inside a super-node are dropped.
+     */
+    private static ForceAtlas2Edges coarsen(ForceAtlas2Edges edges, int[] parent, ForceAtlas2Data coarseData, double edgeWeightInfluence) {
+        int[] source = new int[edges.count];
+        int[] target = new int[edges.count];
+        for (int e = 0; e < edges.count; e++) {
+            source[e] = parent[edges.source[e]];
+            target[e] = parent[edges.target[e]];
+        }
+        ForceAtlas2Edges coarse = new ForceAtlas2Edges();
+        coarse.load(coarseData, source, target, edges.weight, edges.count, edgeWeightInfluence);
+        return coarse;
+    }
+
+    /**
+     * Returns true if the hierarchy was built for the graph nodes as they are
+     * loaded in data.
+     */
+    public boolean isBuiltFor(ForceAtlas2Data data) {
+        return levelData.get(0) == data && data.version == graphVersion && data.count == graphCount;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    public int getLevelCount() {
+        return levelData.size();
+    }
+
+    public ForceAtlas2Data getData() {
+        return levelData.get(level);
+    }
+
+    public ForceAtlas2Edges getEdges() {
+        return levelEdges.get(level);
+    }
+
+    /**
+     * Counts an iteration on the current level. After levelIterations of them,
+     * positions are interpolated to the level below, which becomes current.
+     * Returns true if the level changed.
+     */
+    public boolean step(int levelIterations) {
+        if (level == 0 || ++iterations < levelIterations) {
+            return false;
+        }
+        iterations = 0;
+        interpolate(levelData.get(level), levelData.get(level - 1), parents.get(level - 1), new Random(level));
+        level--;
+        return true;
+    }
+
+    /**
+     * Moves the graph nodes to the position of their super-node on the
+     * current level, to show the progress of the coarse levels.
+     */
+    public void project() {
+        ForceAtlas2Data graph = levelData.get(0);
+        for (int i = 0; i < graph.count; i++) {
+            int p = i;
+            for (int k = 0; k < level; k++) {
+                p = parents.get(k)[p];
+            }
+            if (!graph.fixed[i]) {
+                graph.x[i] = levelData.get(level).x[p];
+                graph.y[i] = levelData.get(level).y[p];
+            }
+        }
+    }
+
+    /*
+     * Nodes start at the position of their super-node, spread by a jitter of
+     * about their size so that merged nodes do not coincide.
+     */
+    private static void interpolate(ForceAtlas2Data coarse, ForceAtlas2Data fine, int[] parent, Random random) {
+        for (int i = 0; i < fine.count; i++) {
+            if (!fine.fixed[i]) {
+                int p = parent[i];
+                double radius = Math.max(1, fine.size[i]);
+                double angle = 2 * Math.PI * random.nextDouble();
+                fine.x[i] = (float) (coarse.x[p] + radius * Math.cos(angle));
+                fine.y[i] = (float) (coarse.y[p] + radius * Math.sin(angle));
+            }
+            fine.dx[i] = 0;
+            fine.dy[i] = 0;
+            fine.old_dx[i] = 0;
+            fine.old_dy[i] = 0;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/*
+Copyright 2008-2011 Gephi
+Authors : Mathieu Jacomy <mathieu.jacomy@gmail.com>
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+ */
+package org.gephi.plugins.layout.forceAtlas2Custom;
+
+import java.util.Arrays;
+
+/**
+ * Orders the nodes along a space-filling curve, so that nodes close in the
+ * layout get close indices. Ranges of nodes handed to threads are then
+ * spatially coherent and walk the same parts of the Barnes Hut tree.
+ */
+public class NodeOrdering {
+
+    public enum Curve {
+
+        NONE, MORTON, HILBERT
+    }
+
+    // Positions are quantized on a 2^16 grid
+    private static final int BITS = 16;
+    private static final int RESOLUTION = (1 << BITS) - 1;
+
+    private NodeOrdering() {
+    }
+
+    /**
+     * Returns the old index of each node in the new order.
+     */
+    public static int[] computeOrder(ForceAtlas2Data data, Curve curve) {
+        int n = data.count;
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < n; i++) {
+            minX = Math.min(minX, data.x[i]);
+            minY = Math.min(minY, data.y[i]);
+            maxX = Math.max(maxX, data.x[i]);
+            maxY = Math.max(maxY, data.y[i]);
+        }
+        double extent = Math.max(maxX - minX, maxY - minY);
+        double scale = (extent > 0) ? (RESOLUTION / extent) : (0);
+
+        // Curve position in the high bits, index in the low 31 bits
+        long[] keys = new long[n];
+        for (int i = 0; i < n; i++) {
+            int qx = Math.min(RESOLUTION, (int) ((data.x[i] - minX) * scale));
+            int qy = Math.min(RESOLUTION, (int) ((data.y[i] - minY) * scale));
+            long d;
+            if (curve == Curve.HILBERT) {
+                d = hilbert(qx, qy);
+            } else {
+                d = ((MortonQuadTree.spreadBits(qx) << 1) | MortonQuadTree.spreadBits(qy)) & 0xFFFFFFFFL;
+            }
+            keys[i] = (d << 31) | i;
+        }
+        Arrays.sort(keys);
+
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = (int) (keys[i] & Integer.MAX_VALUE);
+        }
+        return order;
+    }
+
+    /*
+     * Position of cell (x, y) along the Hilbert curve filling the grid
+     */
+    private static long hilbert(int x, int y) {
+        long d = 0;
+        for (int s = 1 << (BITS - 1); s > 0; s >>= 1) {
+            int rx = (x & s) > 0 ? 1 : 0;
+            int ry = (y & s) > 0 ? 1 : 0;
+            d += (long) s * s * ((3 * rx) ^ ry);
+            // Rotate the quadrant so that the curve continues in it
+            if (ry == 0) {
+                if (rx == 1) {
+                    x = RESOLUTION - x;
+                    y = RESOLUTION - y;
+                }
+                int t = x;
+                x = y;
+                y = t;
+            }
+        }
+        return d;
+    }
+}
@@ -0,0 +1,94 @@
+/*
+Copyright 2008-2011 Gephi
+Authors : Mathieu Jacomy <mathieu.jacomy@gmail.com>
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+ */
+package org.gephi.plugins.layout.forceAtlas2Custom;
+
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Repulsion and gravity on a range of nodes, run on a fork/join pool. The
+ * range is split recursively in halves of equal cost, until the cost of a
+ * range is below the grain, so that idle threads can steal what is left of
+ * the expensive parts. The cost of each node is the one measured by
+ * {@link NodesThread} at the previous iteration.
+ */
+public class NodesTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+    private static final int MIN_NODES = 64;
+    private final NodesThread nodes;
+    // Cost of the nodes before each index
+    private final long[] cumulativeCosts;
+    private final long grain;
+    private final int from;
+    private final int to;
+
+    public NodesTask(NodesThread nodes, long[] cumulativeCosts, long grain, int from, int to) {
+        this.nodes = nodes;
+        this.cumulativeCosts = cumulativeCosts;
+        this.grain = grain;
+        this.from = from;
+        this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+        if (to - from <= MIN_NODES || cumulativeCosts[to] - cumulativeCosts[from] <= grain) {
+            nodes.run(from, to);
+            return;
+        }
+
+        // First node past half of the cost
+        long half = (cumulativeCosts[from] + cumulativeCosts[to]) / 2;
+        int low = from + 1;
+        int high = to - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (cumulativeCosts[mid] < half) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        invokeAll(new NodesTask(nodes, cumulativeCosts, grain, from, low),
+                new NodesTask(nodes, cumulativeCosts, grain, low, to));
+    }
+}
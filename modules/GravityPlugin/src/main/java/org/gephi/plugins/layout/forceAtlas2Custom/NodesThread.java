@@ -41,61 +41,83 @@ Portions Copyrighted 2011 Gephi Consortium.
  */
 package org.gephi.plugins.layout.forceAtlas2Custom;
 
-import org.gephi.graph.api.Node;
 import org.gephi.plugins.layout.forceAtlas2Custom.ForceFactory.RepulsionForce;
 
 /**
  *
  * @author Mathieu Jacomy
  */
-public class NodesThread implements Runnable {
+public class NodesThread implements Runnable, RangeTask {
 
-    private Node[] nodes;
+    private ForceAtlas2Data data;
     private int from;
     private int to;
-    private Region rootRegion;
+    private ApproximateRepulsion approximation;
     private boolean barnesHutOptimize;
     private RepulsionForce Repulsion;
     private double barnesHutTheta;
     private double gravity;
     private RepulsionForce GravityForce;
     private double scaling;
+    private int[] costs;
 
-    public NodesThread(Node[] nodes, int from, int to, boolean barnesHutOptimize, double barnesHutTheta, double gravity, RepulsionForce GravityForce, double scaling, Region rootRegion, RepulsionForce Repulsion) {
-        this.nodes = nodes;
+    public NodesThread() {
+    }
+
+    public NodesThread(ForceAtlas2Data data, int from, int to, boolean barnesHutOptimize, double barnesHutTheta, double gravity, RepulsionForce GravityForce, double scaling, ApproximateRepulsion approximation, RepulsionForce Repulsion, int[] costs) {
+        set(data, from, to, barnesHutOptimize, barnesHutTheta, gravity, GravityForce, scaling, approximation, Repulsion, costs);
+    }
+
+    /**
+     * Parameters of the next run, set again by the layout at each iteration.
+     */
+    public void set(ForceAtlas2Data data, int from, int to, boolean barnesHutOptimize, double barnesHutTheta, double gravity, RepulsionForce GravityForce, double scaling, ApproximateRepulsion approximation, RepulsionForce Repulsion, int[] costs) {
+        this.data = data;
         this.from = from;
         this.to = to;
-        this.rootRegion = rootRegion;
+        this.approximation = approximation;
         this.barnesHutOptimize = barnesHutOptimize;
         this.Repulsion = Repulsion;
         this.barnesHutTheta = barnesHutTheta;
         this.gravity = gravity;
         this.GravityForce = GravityForce;
         this.scaling = scaling;
+        this.costs = costs;
     }
 
     @Override
     public void run() {
+        run(from, to);
+    }
+
+    /**
+     * Computes the nodes in [from, to) only, and records the cost of each of
+     * them. Without Barnes Hut, the exact repulsion is left to TilesThread.
+     */
+    @Override
+    public void run(int from, int to) {
+        LayoutEvents events = LayoutEvents.get();
+        Object event = (events != null) ? (events.beginTask()) : (null);
+        double[] dx = data.dx;
+        double[] dy = data.dy;
+
         // Repulsion
         if (barnesHutOptimize) {
-            for (int nIndex = from; nIndex < to; nIndex++) {
-                Node n = nodes[nIndex];
-                rootRegion.applyForce(n, Repulsion, barnesHutTheta);
+            for (int n = from; n < to; n++) {
+                costs[n] = approximation.applyForce(n, Repulsion, barnesHutTheta, dx, dy);
             }
         } else {
-            for (int n1Index = from; n1Index < to; n1Index++) {
-                Node n1 = nodes[n1Index];
-                for (int n2Index = 0; n2Index < n1Index; n2Index++) {
-                    Node n2 = nodes[n2Index];
-                    Repulsion.apply(n1, n2);
-                }
+            for (int n = from; n < to; n++) {
+                costs[n] = 1;
             }
         }
 
         // Gravity
-        for (int nIndex = from; nIndex < to; nIndex++) {
-            Node n = nodes[nIndex];
-            GravityForce.apply(n, gravity / scaling);
+        for (int n = from; n < to; n++) {
+            GravityForce.apply(n, gravity / scaling, dx, dy);
+        }
+        if (event != null) {
+            events.endTask(event, from, to);
         }
     }
 }
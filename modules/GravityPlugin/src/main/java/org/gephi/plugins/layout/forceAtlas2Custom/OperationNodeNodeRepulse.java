@@ -41,7 +41,6 @@ Portions Copyrighted 2011 Gephi Consortium.
  */
 package org.gephi.plugins.layout.forceAtlas2Custom;
 
-import org.gephi.graph.api.Node;
 import org.gephi.plugins.layout.forceAtlas2Custom.ForceFactory.RepulsionForce;
 
 /**
@@ -50,18 +49,22 @@ import org.gephi.plugins.layout.forceAtlas2Custom.ForceFactory.RepulsionForce;
  */
 public class OperationNodeNodeRepulse extends Operation {
 
-    private final Node n1;
-    private final Node n2;
+    private final int n1;
+    private final int n2;
     private final RepulsionForce f;
+    private final double[] dx;
+    private final double[] dy;
 
-    public OperationNodeNodeRepulse(Node n1, Node n2, RepulsionForce f) {
+    public OperationNodeNodeRepulse(int n1, int n2, RepulsionForce f, double[] dx, double[] dy) {
         this.n1 = n1;
         this.n2 = n2;
         this.f = f;
+        this.dx = dx;
+        this.dy = dy;
     }
 
     @Override
     public void execute() {
-        f.apply(n1, n2);
+        f.apply(n1, n2, dx, dy);
     }
 }
@@ -41,7 +41,6 @@ Portions Copyrighted 2011 Gephi Consortium.
  */
 package org.gephi.plugins.layout.forceAtlas2Custom;
 
-import org.gephi.graph.api.Node;
 import org.gephi.plugins.layout.forceAtlas2Custom.ForceFactory.RepulsionForce;
 
 /**
@@ -50,18 +49,22 @@ import org.gephi.plugins.layout.forceAtlas2Custom.ForceFactory.RepulsionForce;
  */
 public class OperationNodeRepulse extends Operation {
 
-    private Node n;
+    private int n;
     private RepulsionForce f;
     private double coefficient;
+    private double[] dx;
+    private double[] dy;
 
-    public OperationNodeRepulse(Node n, RepulsionForce f, double coefficient) {
+    public OperationNodeRepulse(int n, RepulsionForce f, double coefficient, double[] dx, double[] dy) {
         this.n = n;
         this.f = f;
         this.coefficient = coefficient;
+        this.dx = dx;
+        this.dy = dy;
     }
 
     @Override
     public void execute() {
-        f.apply(n, coefficient);
+        f.apply(n, coefficient, dx, dy);
     }
 }
@@ -0,0 +1,387 @@
+/*
+Copyright 2008-2011 Gephi
+Authors : Mathieu Jacomy <mathieu.jacomy@gmail.com>
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+ */
+package org.gephi.plugins.layout.forceAtlas2Custom;
+
+import java.util.Arrays;
+import org.gephi.plugins.layout.forceAtlas2Custom.ForceFactory.RepulsionForce;
+
+/**
+ * Particle-mesh repulsion. The linear repulsion r / |r|^2 is split with a
+ * Gaussian of width s, a fraction of the mesh spacing: the long range part
+ * (1 - exp(-|r|^2 / 2s^2)) r / |r|^2 is smooth, and is computed on a square
+ * mesh over the layout. Masses are deposited on the mesh (cloud in cell),
+ * convolved with the long range kernel by FFT on a zero padded mesh, and the
+ * field is interpolated back to the nodes with the same weights. The short
+ * range part is applied exactly, on the queried node only, for the nodes
+ * closer than CUTOFF spacings, through the node-node model weighted by
+ * exp(-|r|^2 / 2s^2). The cost is set by the mesh size rather than by tree
+ * depths, and suits layouts whose nodes are fairly uniformly spread: dense
+ * clusters put many nodes in the short range of each other. The theta of the
+ * Barnes Hut optimization is not used.
+ */
+public class ParticleMesh extends ApproximateRepulsion {
+
+    // The mesh holds about this number of nodes per cell
+    private static final int NODES_PER_CELL = 1;
+    private static final int MIN_SIZE = 8;
+    private static final int MAX_SIZE = 1024;
+    // Short range cutoff, in mesh spacings
+    private static final int CUTOFF = 2;
+    // Width of the Gaussian split, in mesh spacings
+    private static final double SPLIT = 0.65;
+    private ForceAtlas2 layout;
+    // Mesh of size x size points, padded to 2 * size for the convolution
+    private int size;
+    private int padded;
+    private double spacing;
+    private double originX;
+    private double originY;
+    private double[] cosTable = new double[0];
+    private double[] sinTable = new double[0];
+    // Transform of the long range kernel, for a unit spacing
+    private double[] kernelRe = new double[0];
+    private double[] kernelIm = new double[0];
+    // Masses, then the field as fieldX + i fieldY
+    private double[] meshRe = new double[0];
+    private double[] meshIm = new double[0];
+    // Nodes sorted by cell, for the short range
+    private int[] cellOffsets = new int[0];
+    private int[] cellNodes = new int[0];
+    // Current transform: the lines of the mesh are split in tasks, each with
+    // its own copy of a line
+    private double[] transformRe;
+    private double[] transformIm;
+    private boolean transformInverse;
+    private int transformLines;
+    private int transformTaskCount;
+    private double[][] lineRe = new double[0][];
+    private double[][] lineIm = new double[0][];
+    private final RangeTask rowsTask = new RangeTask() {
+        @Override
+        public void run(int fromTask, int toTask) {
+            for (int t = fromTask; t < toTask; t++) {
+                double[] rowRe = lineRe[t];
+                double[] rowIm = lineIm[t];
+                int from = (int) ((long) transformLines * t / transformTaskCount);
+                int to = (int) ((long) transformLines * (t + 1) / transformTaskCount);
+                for (int row = from; row < to; row++) {
+                    System.arraycopy(transformRe, row * padded, rowRe, 0, padded);
+                    System.arraycopy(transformIm, row * padded, rowIm, 0, padded);
+                    fft(rowRe, rowIm, transformInverse);
+                    System.arraycopy(rowRe, 0, transformRe, row * padded, padded);
+                    System.arraycopy(rowIm, 0, transformIm, row * padded, padded);
+                }
+            }
+        }
+    };
+    private final RangeTask columnsTask = new RangeTask() {
+        @Override
+        public void run(int fromTask, int toTask) {
+            double[] re = transformRe;
+            double[] im = transformIm;
+            for (int t = fromTask; t < toTask; t++) {
+                double[] columnRe = lineRe[t];
+                double[] columnIm = lineIm[t];
+                int from = (int) ((long) transformLines * t / transformTaskCount);
+                int to = (int) ((long) transformLines * (t + 1) / transformTaskCount);
+                for (int column = from; column < to; column++) {
+                    for (int row = 0; row < padded; row++) {
+                        columnRe[row] = re[row * padded + column];
+                        columnIm[row] = im[row * padded + column];
+                    }
+                    fft(columnRe, columnIm, transformInverse);
+                    for (int row = 0; row < padded; row++) {
+                        re[row * padded + column] = columnRe[row];
+                        im[row * padded + column] = columnIm[row];
+                    }
+                }
+            }
+        }
+    };
+
+    public ParticleMesh(ForceAtlas2Data data) {
+        super(data);
+    }
+
+    @Override
+    public Backend getBackend() {
+        return Backend.PARTICLE_MESH;
+    }
+
+    @Override
+    public boolean isSymmetric() {
+        return false;
+    }
+
+    @Override
+    public boolean isThetaUsed() {
+        return false;
+    }
+
+    @Override
+    public void configure(ForceAtlas2 layout) {
+        this.layout = layout;
+    }
+
+    @Override
+    public void update() {
+        int n = data.count;
+        if (n == 0) {
+            return;
+        }
+        int newSize = MIN_SIZE;
+        while (newSize < MAX_SIZE && newSize * newSize * NODES_PER_CELL < n) {
+            newSize *= 2;
+        }
+        if (newSize != size) {
+            size = newSize;
+            padded = 2 * size;
+            computeKernel();
+        }
+
+        double minX = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < n; i++) {
+            minX = Math.min(minX, data.x[i]);
+            maxX = Math.max(maxX, data.x[i]);
+            minY = Math.min(minY, data.y[i]);
+            maxY = Math.max(maxY, data.y[i]);
+        }
+        // Some margin so that the nodes on the max bounds are inside the last cell
+        spacing = Math.max(1e-6, 1.000001 * Math.max(maxX - minX, maxY - minY) / (size - 1));
+        originX = minX;
+        originY = minY;
+
+        Arrays.fill(meshRe, 0);
+        Arrays.fill(meshIm, 0);
+        int cells = (size - 1) * (size - 1);
+        if (cellOffsets.length != cells + 1) {
+            cellOffsets = new int[cells + 1];
+        }
+        if (cellNodes.length != n) {
+            cellNodes = new int[n];
+        }
+        Arrays.fill(cellOffsets, 0);
+        for (int i = 0; i < n; i++) {
+            double gx = (data.x[i] - originX) / spacing;
+            double gy = (data.y[i] - originY) / spacing;
+            int cx = cell(gx);
+            int cy = cell(gy);
+            double fx = gx - cx;
+            double fy = gy - cy;
+            double mass = data.mass[i];
+            int p = cy * padded + cx;
+            meshRe[p] += mass * (1 - fx) * (1 - fy);
+            meshRe[p + 1] += mass * fx * (1 - fy);
+            meshRe[p + padded] += mass * (1 - fx) * fy;
+            meshRe[p + padded + 1] += mass * fx * fy;
+            cellOffsets[cy * (size - 1) + cx + 1]++;
+        }
+        for (int c = 0; c < cells; c++) {
+            cellOffsets[c + 1] += cellOffsets[c];
+        }
+        int[] cursors = Arrays.copyOf(cellOffsets, cells);
+        for (int i = 0; i < n; i++) {
+            int cx = cell((data.x[i] - originX) / spacing);
+            int cy = cell((data.y[i] - originY) / spacing);
+            cellNodes[cursors[cy * (size - 1) + cx]++] = i;
+        }
+
+        // Masses are only in the first size rows
+        transformRows(meshRe, meshIm, size, false);
+        transformColumns(meshRe, meshIm, false);
+        for (int p = 0; p < meshRe.length; p++) {
+            double re = meshRe[p] * kernelRe[p] - meshIm[p] * kernelIm[p];
+            meshIm[p] = meshRe[p] * kernelIm[p] + meshIm[p] * kernelRe[p];
+            meshRe[p] = re;
+        }
+        // Only the first size rows of the field are read
+        transformColumns(meshRe, meshIm, true);
+        transformRows(meshRe, meshIm, size, true);
+    }
+
+    private int cell(double g) {
+        return Math.max(0, Math.min(size - 2, (int) g));
+    }
+
+    private void computeKernel() {
+        int length = padded * padded;
+        cosTable = new double[padded / 2];
+        sinTable = new double[padded / 2];
+        for (int k = 0; k < padded / 2; k++) {
+            cosTable[k] = Math.cos(2 * Math.PI * k / padded);
+            sinTable[k] = Math.sin(2 * Math.PI * k / padded);
+        }
+        meshRe = new double[length];
+        meshIm = new double[length];
+        kernelRe = new double[length];
+        kernelIm = new double[length];
+        // Offsets from -(size - 1) to size - 1, wrapped
+        for (int j = 0; j < padded; j++) {
+            int v = (j < size) ? (j) : (j - padded);
+            for (int i = 0; i < padded; i++) {
+                int u = (i < size) ? (i) : (i - padded);
+                double distance2 = u * u + v * v;
+                if (distance2 > 0 && i != size && j != size) {
+                    double factor = (1 - Math.exp(-distance2 / (2 * SPLIT * SPLIT))) / distance2;
+                    kernelRe[j * padded + i] = u * factor;
+                    kernelIm[j * padded + i] = v * factor;
+                }
+            }
+        }
+        transformRows(kernelRe, kernelIm, padded, false);
+        transformColumns(kernelRe, kernelIm, false);
+        // The inverse transform is not normalized
+        double scale = 1.0 / length;
+        for (int p = 0; p < length; p++) {
+            kernelRe[p] *= scale;
+            kernelIm[p] *= scale;
+        }
+    }
+
+    private void transformRows(double[] re, double[] im, int rows, boolean inverse) {
+        runTransform(rowsTask, re, im, rows, inverse);
+    }
+
+    private void transformColumns(double[] re, double[] im, boolean inverse) {
+        runTransform(columnsTask, re, im, padded, inverse);
+    }
+
+    private void runTransform(RangeTask task, double[] re, double[] im, int lines, boolean inverse) {
+        int taskCount = Math.max(1, Math.min(layout.getTaskCount(), lines / 8));
+        if (lineRe.length < taskCount || (taskCount > 0 && lineRe[0].length != padded)) {
+            lineRe = new double[taskCount][padded];
+            lineIm = new double[taskCount][padded];
+        }
+        transformRe = re;
+        transformIm = im;
+        transformInverse = inverse;
+        transformLines = lines;
+        transformTaskCount = taskCount;
+        layout.runRange(task, taskCount, taskCount);
+        transformRe = null;
+        transformIm = null;
+    }
+
+    // In place radix 2 FFT, the length is the padded size
+    private void fft(double[] re, double[] im, boolean inverse) {
+        int length = re.length;
+        for (int i = 1, j = 0; i < length; i++) {
+            int bit = length >> 1;
+            for (; (j & bit) != 0; bit >>= 1) {
+                j ^= bit;
+            }
+            j ^= bit;
+            if (i < j) {
+                double t = re[i];
+                re[i] = re[j];
+                re[j] = t;
+                t = im[i];
+                im[i] = im[j];
+                im[j] = t;
+            }
+        }
+        for (int half = 1; half < length; half <<= 1) {
+            int step = length / (2 * half);
+            for (int i = 0; i < length; i += 2 * half) {
+                for (int k = 0; k < half; k++) {
+                    double wRe = cosTable[k * step];
+                    double wIm = (inverse) ? (sinTable[k * step]) : (-sinTable[k * step]);
+                    int a = i + k;
+                    int b = a + half;
+                    double tRe = re[b] * wRe - im[b] * wIm;
+                    double tIm = re[b] * wIm + im[b] * wRe;
+                    re[b] = re[a] - tRe;
+                    im[b] = im[a] - tIm;
+                    re[a] += tRe;
+                    im[a] += tIm;
+                }
+            }
+        }
+    }
+
+    @Override
+    public int applyForce(int n, RepulsionForce Force, double theta, double[] dx, double[] dy) {
+        if (size == 0) {
+            return 0;
+        }
+        // Long range: field interpolated from the mesh
+        double gx = (data.x[n] - originX) / spacing;
+        double gy = (data.y[n] - originY) / spacing;
+        int cx = cell(gx);
+        int cy = cell(gy);
+        double fx = gx - cx;
+        double fy = gy - cy;
+        int p = cy * padded + cx;
+        double w00 = (1 - fx) * (1 - fy);
+        double w10 = fx * (1 - fy);
+        double w01 = (1 - fx) * fy;
+        double w11 = fx * fy;
+        double fieldX = w00 * meshRe[p] + w10 * meshRe[p + 1] + w01 * meshRe[p + padded] + w11 * meshRe[p + padded + 1];
+        double fieldY = w00 * meshIm[p] + w10 * meshIm[p + 1] + w01 * meshIm[p + padded] + w11 * meshIm[p + padded + 1];
+        Force.applyField(n, fieldX / spacing, fieldY / spacing, dx, dy);
+        int cost = 4;
+
+        // Short range: exact repulsion weighted by the rest of the split
+        double cutoff2 = CUTOFF * CUTOFF * spacing * spacing;
+        double scale = -0.5 / (SPLIT * SPLIT * spacing * spacing);
+        int cells = size - 1;
+        for (int y = Math.max(0, cy - CUTOFF); y <= Math.min(cells - 1, cy + CUTOFF); y++) {
+            for (int x = Math.max(0, cx - CUTOFF); x <= Math.min(cells - 1, cx + CUTOFF); x++) {
+                int c = y * cells + x;
+                for (int i = cellOffsets[c]; i < cellOffsets[c + 1]; i++) {
+                    int m = cellNodes[i];
+                    double xDist = data.x[n] - data.x[m];
+                    double yDist = data.y[n] - data.y[m];
+                    double distance2 = xDist * xDist + yDist * yDist;
+                    if (m != n && distance2 < cutoff2) {
+                        Force.apply(n, m, Math.exp(distance2 * scale), dx, dy);
+                    }
+                }
+                cost += cellOffsets[c + 1] - cellOffsets[c];
+            }
+        }
+        return cost;
+    }
+}
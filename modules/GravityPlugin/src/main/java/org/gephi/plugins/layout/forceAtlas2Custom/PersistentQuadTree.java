@@ -0,0 +1,319 @@
+/*
+Copyright 2008-2011 Gephi
+Authors : Mathieu Jacomy <mathieu.jacomy@gmail.com>
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+ */
+package org.gephi.plugins.layout.forceAtlas2Custom;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.gephi.plugins.layout.forceAtlas2Custom.ForceFactory.RepulsionForce;
+
+/**
+ * Barnes Hut optimization on a quadtree kept across iterations. Cells are
+ * square and split at their geometric center, so a node keeps its cell as long
+ * as it stays inside the cell bounds. At each iteration only the nodes that
+ * left their cell are moved, then masses, mass centers and sizes are refitted
+ * bottom-up. The tree is rebuilt from scratch when a node leaves the root cell
+ * or when the fraction of nodes moved since the last rebuild exceeds the
+ * rebuild threshold.
+ */
+public class PersistentQuadTree extends ApproximateRepulsion {
+
+    private static final int LEAF_CAPACITY = 8;
+    private static final int MAX_DEPTH = 32;
+    private double rebuildThreshold = 0.25;
+    // Cells pool, children are always after their parent
+    private final List<Cell> cells = new ArrayList<Cell>();
+    private int cellCount;
+    private Cell root;
+    private Cell[] leafOf = new Cell[0];
+    private int loadedVersion = -1;
+    private int movedSinceRebuild;
+    private int rebuildCount;
+
+    public PersistentQuadTree(ForceAtlas2Data data) {
+        super(data);
+    }
+
+    @Override
+    public Backend getBackend() {
+        return Backend.PERSISTENT_QUADTREE;
+    }
+
+    @Override
+    public void configure(ForceAtlas2 layout) {
+        rebuildThreshold = layout.getBarnesHutRebuildThreshold();
+    }
+
+    @Override
+    public void update() {
+        if (root == null || loadedVersion != data.version || leafOf.length != data.count) {
+            loadedVersion = data.version;
+            rebuild();
+        } else {
+            float[] x = data.x;
+            float[] y = data.y;
+            for (int n = 0; n < data.count; n++) {
+                Cell leaf = leafOf[n];
+                if (!leaf.contains(x[n], y[n])) {
+                    if (!root.contains(x[n], y[n])) {
+                        rebuild();
+                        break;
+                    }
+                    leaf.remove(n);
+                    Cell cell = leaf.parent;
+                    while (!cell.contains(x[n], y[n])) {
+                        cell = cell.parent;
+                    }
+                    insert(cell, n);
+                    movedSinceRebuild++;
+                }
+            }
+            if (movedSinceRebuild > rebuildThreshold * data.count) {
+                rebuild();
+            }
+        }
+        refit();
+    }
+
+    private void rebuild() {
+        double minX = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (int n = 0; n < data.count; n++) {
+            minX = Math.min(minX, data.x[n]);
+            maxX = Math.max(maxX, data.x[n]);
+            minY = Math.min(minY, data.y[n]);
+            maxY = Math.max(maxY, data.y[n]);
+        }
+        if (data.count == 0) {
+            minX = maxX = minY = maxY = 0;
+        }
+        // Some margin so that the root lasts while the layout expands
+        double halfSize = 0.55 * Math.max(maxX - minX, maxY - minY) + 1;
+
+        cellCount = 0;
+        root = obtainCell(null, (minX + maxX) / 2, (minY + maxY) / 2, halfSize);
+        if (leafOf.length != data.count) {
+            leafOf = new Cell[data.count];
+        }
+        for (int n = 0; n < data.count; n++) {
+            insert(root, n);
+        }
+        movedSinceRebuild = 0;
+        rebuildCount++;
+    }
+
+    private Cell obtainCell(Cell parent, double centerX, double centerY, double halfSize) {
+        Cell cell;
+        if (cellCount < cells.size()) {
+            cell = cells.get(cellCount);
+        } else {
+            cell = new Cell();
+            cells.add(cell);
+        }
+        cellCount++;
+        cell.parent = parent;
+        cell.depth = (parent == null) ? (0) : (parent.depth + 1);
+        cell.centerX = centerX;
+        cell.centerY = centerY;
+        cell.halfSize = halfSize;
+        cell.leaf = true;
+        cell.nodeCount = 0;
+        return cell;
+    }
+
+    private void insert(Cell from, int n) {
+        Cell cell = from;
+        while (!cell.leaf) {
+            cell = cell.children[cell.quadrant(data.x[n], data.y[n])];
+        }
+        cell.add(n);
+        leafOf[n] = cell;
+        if (cell.nodeCount > LEAF_CAPACITY && cell.depth < MAX_DEPTH) {
+            split(cell);
+        }
+    }
+
+    private void split(Cell cell) {
+        int[] moving = Arrays.copyOf(cell.nodes, cell.nodeCount);
+        double half = cell.halfSize / 2;
+        cell.leaf = false;
+        cell.nodeCount = 0;
+        cell.children[0] = obtainCell(cell, cell.centerX - half, cell.centerY - half, half);
+        cell.children[1] = obtainCell(cell, cell.centerX - half, cell.centerY + half, half);
+        cell.children[2] = obtainCell(cell, cell.centerX + half, cell.centerY + half, half);
+        cell.children[3] = obtainCell(cell, cell.centerX + half, cell.centerY - half, half);
+        for (int n : moving) {
+            insert(cell, n);
+        }
+    }
+
+    private void refit() {
+        for (int c = cellCount - 1; c >= 0; c--) {
+            Cell cell = cells.get(c);
+            double mass = 0;
+            double massSumX = 0;
+            double massSumY = 0;
+            if (cell.leaf) {
+                for (int i = 0; i < cell.nodeCount; i++) {
+                    int n = cell.nodes[i];
+                    mass += data.mass[n];
+                    massSumX += data.x[n] * data.mass[n];
+                    massSumY += data.y[n] * data.mass[n];
+                }
+            } else {
+                for (Cell child : cell.children) {
+                    mass += child.mass;
+                    massSumX += child.massCenterX * child.mass;
+                    massSumY += child.massCenterY * child.mass;
+                }
+            }
+            cell.mass = mass;
+            if (mass == 0) {
+                continue;
+            }
+            cell.massCenterX = massSumX / mass;
+            cell.massCenterY = massSumY / mass;
+
+            // Size: exact for a leaf, an upper bound from the children otherwise
+            double size = Double.MIN_VALUE;
+            if (cell.leaf) {
+                for (int i = 0; i < cell.nodeCount; i++) {
+                    int n = cell.nodes[i];
+                    double distance = Math.sqrt((data.x[n] - cell.massCenterX) * (data.x[n] - cell.massCenterX) + (data.y[n] - cell.massCenterY) * (data.y[n] - cell.massCenterY));
+                    size = Math.max(size, 2 * distance);
+                }
+            } else {
+                for (Cell child : cell.children) {
+                    if (child.mass > 0) {
+                        double distance = Math.sqrt((child.massCenterX - cell.massCenterX) * (child.massCenterX - cell.massCenterX) + (child.massCenterY - cell.massCenterY) * (child.massCenterY - cell.massCenterY));
+                        size = Math.max(size, 2 * distance + child.size);
+                    }
+                }
+            }
+            cell.size = size;
+        }
+    }
+
+    @Override
+    public int applyForce(int n, RepulsionForce Force, double theta, double[] dx, double[] dy) {
+        return applyForce(root, n, Force, theta, dx, dy);
+    }
+
+    private int applyForce(Cell cell, int n, RepulsionForce Force, double theta, double[] dx, double[] dy) {
+        if (cell.mass == 0) {
+            return 0;
+        }
+        if (cell.leaf && cell.nodeCount == 1) {
+            Force.apply(n, cell.nodes[0], dx, dy);
+            return 1;
+        }
+        double distance = Math.sqrt((data.x[n] - cell.massCenterX) * (data.x[n] - cell.massCenterX) + (data.y[n] - cell.massCenterY) * (data.y[n] - cell.massCenterY));
+        if (distance * theta > cell.size) {
+            Force.apply(n, cell.massCenterX, cell.massCenterY, cell.mass, dx, dy);
+            return 1;
+        } else if (cell.leaf) {
+            Force.apply(n, cell.nodes, 0, cell.nodeCount, dx, dy);
+            return cell.nodeCount;
+        } else {
+            int cost = 0;
+            for (Cell child : cell.children) {
+                cost += applyForce(child, n, Force, theta, dx, dy);
+            }
+            return cost;
+        }
+    }
+
+    public int getRebuildCount() {
+        return rebuildCount;
+    }
+
+    private static class Cell {
+
+        private Cell parent;
+        private int depth;
+        private boolean leaf;
+        private final Cell[] children = new Cell[4];
+        // Bounds
+        private double centerX;
+        private double centerY;
+        private double halfSize;
+        // Nodes of a leaf
+        private int[] nodes = new int[LEAF_CAPACITY + 1];
+        private int nodeCount;
+        // Refitted at each iteration
+        private double mass;
+        private double massCenterX;
+        private double massCenterY;
+        private double size;
+
+        private boolean contains(double x, double y) {
+            return x >= centerX - halfSize && x < centerX + halfSize
+                    && y >= centerY - halfSize && y < centerY + halfSize;
+        }
+
+        private int quadrant(double x, double y) {
+            if (x < centerX) {
+                return (y < centerY) ? (0) : (1);
+            } else {
+                return (y < centerY) ? (3) : (2);
+            }
+        }
+
+        private void add(int n) {
+            if (nodeCount == nodes.length) {
+                nodes = Arrays.copyOf(nodes, 2 * nodes.length);
+            }
+            nodes[nodeCount++] = n;
+        }
+
+        private void remove(int n) {
+            for (int i = 0; i < nodeCount; i++) {
+                if (nodes[i] == n) {
+                    nodes[i] = nodes[--nodeCount];
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/*
+Copyright 2008-2011 Gephi
+Authors : Mathieu Jacomy <mathieu.jacomy@gmail.com>
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+ */
+package org.gephi.plugins.layout.forceAtlas2Custom;
+
+import java.util.concurrent.Phaser;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.openide.util.Exceptions;
+
+/**
+ * Long-lived worker threads that run the phases of an iteration together
+ * with the calling thread. All the threads meet on a phaser at the start and
+ * at the end of each phase, and take the chunks of the phase in turn from a
+ * shared counter, so that running a phase allocates nothing.
+ */
+public class PhaseWorkers {
+
+    private final Phaser phaser;
+    private final Thread[] threads;
+    private final AtomicInteger nextChunk = new AtomicInteger();
+    private final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+    // Current phase, a range task split by bounds
+    private RangeTask range;
+    private int[] bounds;
+    private int chunkCount;
+    private volatile boolean terminated;
+
+    /**
+     * Starts the given number of threads, in addition to the calling one.
+     */
+    public PhaseWorkers(int workerCount) {
+        phaser = new Phaser(workerCount + 1);
+        threads = new Thread[workerCount];
+        for (int i = 0; i < workerCount; i++) {
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    while (true) {
+                        phaser.arriveAndAwaitAdvance();
+                        if (terminated) {
+                            return;
+                        }
+                        work();
+                        phaser.arriveAndAwaitAdvance();
+                    }
+                }
+            }, "ForceAtlas2 worker " + i);
+            threads[i].setDaemon(true);
+            threads[i].start();
+        }
+    }
+
+    /**
+     * Runs the task on the chunks [bounds[k], bounds[k+1]) for k up to
+     * chunkCount, and waits for all of them to complete.
+     */
+    public void run(RangeTask range, int[] bounds, int chunkCount) {
+        this.range = range;
+        this.bounds = bounds;
+        this.chunkCount = chunkCount;
+        nextChunk.set(0);
+        phaser.arriveAndAwaitAdvance();
+        work();
+        phaser.arriveAndAwaitAdvance();
+        range = null;
+        bounds = null;
+        Throwable t = error.getAndSet(null);
+        if (t != null) {
+            Exceptions.printStackTrace(t);
+        }
+    }
+
+    private void work() {
+        try {
+            int chunk;
+            while ((chunk = nextChunk.getAndIncrement()) < chunkCount) {
+                range.run(bounds[chunk], bounds[chunk + 1]);
+            }
+        } catch (Throwable t) {
+            error.compareAndSet(null, t);
+        }
+    }
+
+    /**
+     * Stops the worker threads, once they are done with the current phase.
+     */
+    public void shutdown() {
+        terminated = true;
+        phaser.arriveAndDeregister();
+    }
+}
@@ -0,0 +1,171 @@
+/*
+Copyright 2008-2011 Gephi
+Authors : Mathieu Jacomy <mathieu.jacomy@gmail.com>
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+ */
+package org.gephi.plugins.layout.forceAtlas2Custom;
+
+import org.gephi.plugins.layout.forceAtlas2Custom.ForceFactory.RepulsionForce;
+
+/**
+ * Exact repulsion by tiles of the pair matrix. Nodes are cut in
+ * tiles of TILE_SIZE consecutive indices, small enough for the positions and
+ * forces of two tiles to stay in cache, and the tile pairs (i, j), j &lt;= i,
+ * are enumerated row by row. Each pair of nodes is computed once with the
+ * symmetric model. Tile pairs are split in taskCount ranges of about the same
+ * number of node pairs, and each task accumulates into its own buffer as in
+ * {@link EdgesThread}. Runs over task indices.
+ */
+public class TilesThread implements Runnable, RangeTask {
+
+    public static final int TILE_SIZE = 256;
+    private ForceAtlas2Data data;
+    private RepulsionForce Repulsion;
+    private int taskCount;
+    private double[] firstDx;
+    private double[] firstDy;
+    private double[][] buffersDx;
+    private double[][] buffersDy;
+    // Ranges of tile pairs of the tasks, kept while the node count and the
+    // task count do not change
+    private int[] bounds = new int[0];
+    private int boundsNodeCount = -1;
+
+    public TilesThread() {
+    }
+
+    public TilesThread(ForceAtlas2Data data, RepulsionForce Repulsion, int taskCount, double[] firstDx, double[] firstDy, double[][] buffersDx, double[][] buffersDy) {
+        set(data, Repulsion, taskCount, firstDx, firstDy, buffersDx, buffersDy);
+    }
+
+    public void set(ForceAtlas2Data data, RepulsionForce Repulsion, int taskCount, double[] firstDx, double[] firstDy, double[][] buffersDx, double[][] buffersDy) {
+        this.data = data;
+        this.Repulsion = Repulsion;
+        this.taskCount = taskCount;
+        this.firstDx = firstDx;
+        this.firstDy = firstDy;
+        this.buffersDx = buffersDx;
+        this.buffersDy = buffersDy;
+        if (boundsNodeCount != data.count || bounds.length != taskCount + 1) {
+            bounds = getPairBounds(data.count, taskCount);
+            boundsNodeCount = data.count;
+        }
+    }
+
+    @Override
+    public void run() {
+        run(0, taskCount);
+    }
+
+    @Override
+    public void run(int fromTask, int toTask) {
+        for (int t = fromTask; t < toTask; t++) {
+            double[] dx;
+            double[] dy;
+            if (firstDx == null) {
+                dx = buffersDx[t];
+                dy = buffersDy[t];
+            } else if (t == 0) {
+                dx = firstDx;
+                dy = firstDy;
+            } else {
+                dx = buffersDx[t - 1];
+                dy = buffersDy[t - 1];
+            }
+            if (dx != firstDx) {
+                for (int n = 0; n < dx.length; n++) {
+                    dx[n] = 0;
+                    dy[n] = 0;
+                }
+            }
+            runPairs(bounds[t], bounds[t + 1], dx, dy);
+        }
+    }
+
+    private void runPairs(int from, int to, double[] dx, double[] dy) {
+        int n = data.count;
+        int tileCount = getTileCount(n);
+        int pair = 0;
+        for (int i = 0; i < tileCount && pair < to; i++) {
+            if (pair + i + 1 <= from) {
+                pair += i + 1;
+                continue;
+            }
+            int iFrom = i * TILE_SIZE;
+            int iTo = Math.min(n, iFrom + TILE_SIZE);
+            for (int j = 0; j <= i; j++, pair++) {
+                if (pair < from || pair >= to) {
+                    continue;
+                }
+                int jFrom = j * TILE_SIZE;
+                Repulsion.applyTile(iFrom, iTo, jFrom, Math.min(n, jFrom + TILE_SIZE), dx, dy);
+            }
+        }
+    }
+
+    public static int getTileCount(int nodeCount) {
+        return (nodeCount + TILE_SIZE - 1) / TILE_SIZE;
+    }
+
+    /**
+     * Splits the tile pairs in taskCount ranges of about the same number of
+     * node pairs, a diagonal tile counting for half a tile. Returns the
+     * taskCount + 1 bounds of the ranges.
+     */
+    public static int[] getPairBounds(int nodeCount, int taskCount) {
+        int tileCount = getTileCount(nodeCount);
+        long total = (long) tileCount * tileCount;
+        int[] bounds = new int[taskCount + 1];
+        int task = 1;
+        long weight = 0;
+        int pair = 0;
+        for (int i = 0; i < tileCount; i++) {
+            for (int j = 0; j <= i; j++, pair++) {
+                while (task < taskCount && weight >= total * task / taskCount) {
+                    bounds[task++] = pair;
+                }
+                weight += (i == j) ? (1) : (2);
+            }
+        }
+        while (task <= taskCount) {
+            bounds[task++] = pair;
+        }
+        return bounds;
+    }
+}
@@ -0,0 +1,104 @@
+/*
+Copyright 2008-2011 Gephi
+Authors : Mathieu Jacomy <mathieu.jacomy@gmail.com>
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+ */
+package org.gephi.plugins.layout.forceAtlas2Custom;
+
+/**
+ * Vectorized versions of the hottest force loops. The implementation is built
+ * from src/main/java-vector with the "vector" Maven profile, on the incubating
+ * Java Vector API (JDK 16 or later), and is only used when the JVM runs with
+ * --add-modules jdk.incubator.vector. Otherwise get() returns null and the
+ * forces keep their scalar loops. It can also be disabled with
+ * -Dforceatlas2.vector=false.
+ * <p>
+ * The kernels use the same formulas as the scalar forces, including the
+ * distances rounded to float, but sum the forces of a node in another order.
+ */
+public abstract class VectorKernels {
+
+    private static final String IMPLEMENTATION = "org.gephi.plugins.layout.forceAtlas2Custom.IncubatorVectorKernels";
+    private static final VectorKernels INSTANCE = load();
+
+    private static VectorKernels load() {
+        if (!Boolean.parseBoolean(System.getProperty("forceatlas2.vector", "true"))) {
+            return null;
+        }
+        try {
+            return (VectorKernels) Class.forName(IMPLEMENTATION).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException ex) {
+            return null;
+        } catch (LinkageError ex) {
+            // Built without the profile, or jdk.incubator.vector not resolved
+            return null;
+        }
+    }
+
+    /**
+     * Returns the vectorized kernels, or null if they are not available.
+     */
+    public static VectorKernels get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Linear repulsion between all n1 in [from1, to1) and n2 in [from2, to2),
+     * with n2 &lt; n1 when both ranges start together, on both nodes.
+     */
+    public abstract void linRepulsion(ForceAtlas2Data data, double coefficient, int from1, int to1, int from2, int to2, double[] dx, double[] dy);
+
+    /**
+     * Linear repulsion between n and the distinct nodes[from, to), on both
+     * nodes.
+     */
+    public abstract void linRepulsion(ForceAtlas2Data data, double coefficient, int n, int[] nodes, int from, int to, double[] dx, double[] dy);
+
+    /**
+     * Linear repulsion of the nodes[from, to) on n only, scaled by weight.
+     */
+    public abstract void linRepulsion(ForceAtlas2Data data, double coefficient, int n, int[] nodes, int from, int to, double weight, double[] dx, double[] dy);
+
+    /**
+     * Logarithmic attraction along the edges [from, to), not distributed and
+     * without anti-collision. The linear attraction has too little arithmetic
+     * per edge to gain from vectors.
+     */
+    public abstract void logAttraction(ForceAtlas2Data data, double coefficient, int[] source, int[] target, double[] weight, int from, int to, double[] dx, double[] dy);
+}